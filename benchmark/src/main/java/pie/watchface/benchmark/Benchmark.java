@@ -0,0 +1,37 @@
+package pie.watchface.benchmark;
+
+/**
+ * A single microbenchmark. {@link #run()} performs {@link #opsPerRun} operations, the runner
+ * reports time and allocations per operation.
+ */
+public abstract class Benchmark {
+
+    // consumes results, so the JIT can't drop the measured work
+    public static volatile long sink;
+
+    public final String name;
+    public final int opsPerRun;
+
+    protected Benchmark(String name, int opsPerRun) {
+        this.name = name;
+        this.opsPerRun = opsPerRun;
+    }
+
+    protected Benchmark(String name) {
+        this(name, 1);
+    }
+
+    /**
+     * Called once before warming up
+     */
+    public void setUp() {
+    }
+
+    /**
+     * Called once after measuring
+     */
+    public void tearDown() {
+    }
+
+    public abstract void run();
+}
@@ -0,0 +1,38 @@
+package pie.watchface.benchmark;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.Resources;
+import android.database.Cursor;
+import android.net.Uri;
+import android.util.DisplayMetrics;
+
+/**
+ * A stand-in Android context with a round 320x320 hdpi screen, whose calendar provider
+ * returns the rows of a {@link SyntheticCalendar}.
+ */
+public class BenchmarkEnvironment {
+
+    public static final int SCREEN_SIZE = 320;
+
+    public final Context context;
+    public final SyntheticCalendar calendar;
+
+    public BenchmarkEnvironment(SyntheticCalendar calendar) {
+        this.calendar = calendar;
+
+        DisplayMetrics metrics = new DisplayMetrics();
+        metrics.density = 1.5f;
+        metrics.scaledDensity = 1.5f;
+        metrics.widthPixels = SCREEN_SIZE;
+        metrics.heightPixels = SCREEN_SIZE;
+
+        final SyntheticCalendar provider = calendar;
+        this.context = new Context(new Resources(metrics), new ContentResolver(new ContentResolver.QueryHandler() {
+            @Override
+            public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+                return provider.query(projection);
+            }
+        }));
+    }
+}
@@ -0,0 +1,83 @@
+package pie.watchface.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs all benchmarks, or the ones whose name contains the first argument, and prints
+ * the average time and the bytes allocated per operation.
+ */
+public class BenchmarkRunner {
+
+    private static final long WARMUP_NANOS = 500 * 1000000L;
+    private static final long MEASURE_NANOS = 1000 * 1000000L;
+
+    private final com.sun.management.ThreadMXBean mThreadBean;
+
+    public BenchmarkRunner() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        mThreadBean = threadBean instanceof com.sun.management.ThreadMXBean
+                ? (com.sun.management.ThreadMXBean) threadBean
+                : null;
+    }
+
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : null;
+
+        List<Benchmark> benchmarks = new ArrayList<>();
+        MathBenchmarks.addTo(benchmarks);
+        CalendarBenchmarks.addTo(benchmarks);
+        SyncBenchmarks.addTo(benchmarks);
+        FrameBenchmarks.addTo(benchmarks);
+
+        BenchmarkRunner runner = new BenchmarkRunner();
+        System.out.println(String.format(Locale.US, "%-44s %14s %14s", "benchmark", "ns/op", "bytes/op"));
+
+        for (Benchmark benchmark : benchmarks) {
+            if (filter != null && !benchmark.name.contains(filter))
+                continue;
+
+            runner.measure(benchmark);
+        }
+    }
+
+    public void measure(Benchmark benchmark) {
+        benchmark.setUp();
+        try {
+            runFor(benchmark, WARMUP_NANOS);
+
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = allocatedBytes(threadId);
+            long start = System.nanoTime();
+            long runs = runFor(benchmark, MEASURE_NANOS);
+            long elapsed = System.nanoTime() - start;
+            long allocated = allocatedBytes(threadId) - allocatedBefore;
+
+            long ops = runs * benchmark.opsPerRun;
+            System.out.println(String.format(Locale.US, "%-44s %14.1f %14s", benchmark.name
+                    , elapsed / (double) ops
+                    , allocatedBefore < 0 ? "n/a" : String.format(Locale.US, "%.1f", allocated / (double) ops)));
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    private static long runFor(Benchmark benchmark, long nanos) {
+        long end = System.nanoTime() + nanos;
+        long runs = 0;
+        do {
+            benchmark.run();
+            runs++;
+        } while (System.nanoTime() < end);
+        return runs;
+    }
+
+    private long allocatedBytes(long threadId) {
+        return mThreadBean != null && mThreadBean.isThreadAllocatedMemorySupported()
+                ? mThreadBean.getThreadAllocatedBytes(threadId)
+                : -1;
+    }
+}
@@ -0,0 +1,177 @@
+package pie.watchface.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import pie.watchface.CalendarEvent;
+import pie.watchface.CalendarEventLoader;
+import pie.watchface.EventSnapshot;
+import pie.watchface.EventSnapshotFile;
+import pie.watchface.EventStore;
+import pie.watchface.LaneAllocator;
+
+/**
+ * The calendar load path: the provider query with cursor walk and sort, a full loader refresh
+ * including the diff against the previous snapshot, and the lane assignment of overlapping events.
+ * One op is one load, or one assignment. The minute tick benchmarks slide the loader through a day
+ * of events one minute per op, the way the watch face asks for a refresh on every time tick.
+ * The restore benchmarks read the prefetched events back from the snapshot file, as a new engine does
+ * before its first frame.
+ */
+public class CalendarBenchmarks {
+
+    private static final int[] EVENT_COUNTS = {10, 50, 200};
+
+    public static void addTo(List<Benchmark> benchmarks) {
+        for (final int eventCount : EVENT_COUNTS) {
+            benchmarks.add(new Benchmark("calendar.allEvents[" + eventCount + "]") {
+                private BenchmarkEnvironment mEnvironment;
+
+                @Override
+                public void setUp() {
+                    mEnvironment = new BenchmarkEnvironment(new SyntheticCalendar(eventCount, 42));
+                }
+
+                @Override
+                public void run() {
+                    long now = System.currentTimeMillis();
+                    sink += CalendarEvent.allEvents(mEnvironment.context, now, now + CalendarEventLoader.WINDOW_LENGTH_MILLIS).size();
+                }
+            });
+
+            benchmarks.add(new Benchmark("calendar.restore[" + eventCount + "]") {
+                private File mFile;
+                private EventSnapshotFile mSnapshotFile;
+
+                @Override
+                public void setUp() {
+                    try {
+                        mFile = File.createTempFile("events", ".snapshot");
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    mSnapshotFile = new EventSnapshotFile(mFile);
+                    long now = System.currentTimeMillis();
+                    mSnapshotFile.write(new SyntheticCalendar(eventCount, 42).events(), now, now + CalendarEventLoader.PREFETCH_LENGTH_MILLIS);
+                }
+
+                @Override
+                public void run() {
+                    sink += mSnapshotFile.read().events.size();
+                }
+
+                @Override
+                public void tearDown() {
+                    mFile.delete();
+                }
+            });
+
+            benchmarks.add(new Benchmark("calendar.loaderRefresh[" + eventCount + "]") {
+                private CalendarEventLoader mLoader;
+
+                @Override
+                public void setUp() {
+                    mLoader = newLoader(new SyntheticCalendar(eventCount, 42));
+                }
+
+                @Override
+                public void run() {
+                    mLoader.requestLoad();
+                    sink += mLoader.getSnapshot().version;
+                }
+
+                @Override
+                public void tearDown() {
+                    mLoader.quit();
+                }
+            });
+
+            benchmarks.add(new Benchmark("calendar.minuteTick[" + eventCount + "]") {
+                private static final long DAY_MILLIS = 24 * 60 * 60 * 1000L;
+
+                private final long mStart = System.currentTimeMillis();
+                private final long[] mNow = {mStart};
+                private CalendarEventLoader mLoader;
+
+                @Override
+                public void setUp() {
+                    // the same density of events as the other benchmarks, over two days
+                    final SyntheticCalendar calendar = new SyntheticCalendar(eventCount * 4, 42, mStart, 2 * DAY_MILLIS);
+                    mLoader = new CalendarEventLoader(new BenchmarkEnvironment(calendar).context, new CalendarEventLoader.EventSource() {
+                        @Override
+                        public EventStore query(long beginMillis, long endMillis) {
+                            return calendar.events(beginMillis, endMillis);
+                        }
+                    }, new CalendarEventLoader.Listener() {
+                        @Override
+                        public void onSnapshotPublished(EventSnapshot snapshot) {
+                        }
+                    });
+                    mLoader.setClock(new CalendarEventLoader.Clock() {
+                        @Override
+                        public long currentTimeMillis() {
+                            return mNow[0];
+                        }
+                    });
+                    mLoader.requestLoad();
+                }
+
+                @Override
+                public void run() {
+                    mNow[0] += 60 * 1000L;
+                    if (mNow[0] >= mStart + DAY_MILLIS) {
+                        mNow[0] = mStart;
+                        mLoader.requestLoad();
+                    }
+                    mLoader.refreshIfNeeded();
+                    sink += mLoader.getSnapshot().version;
+                }
+
+                @Override
+                public void tearDown() {
+                    mLoader.quit();
+                }
+            });
+
+            benchmarks.add(new Benchmark("calendar.lanes[" + eventCount + "]") {
+                private final long[] mStarts = new long[eventCount];
+                private final long[] mEnds = new long[eventCount];
+                private final int[] mLanes = new int[eventCount];
+                private final int[] mLaneCounts = new int[eventCount];
+
+                @Override
+                public void setUp() {
+                    EventStore events = new SyntheticCalendar(eventCount, 42).events();
+                    for (int i = 0; i < events.size(); i++) {
+                        mStarts[i] = events.getStartMillis(i);
+                        mEnds[i] = events.getEndMillis(i);
+                    }
+                }
+
+                @Override
+                public void run() {
+                    LaneAllocator.assign(mStarts, mEnds, eventCount, mLanes, mLaneCounts);
+                    sink += mLaneCounts[0];
+                }
+            });
+        }
+    }
+
+    /**
+     * @return a loader that loads the synthetic events, synchronously as the stand-in handlers run posts right away
+     */
+    public static CalendarEventLoader newLoader(final SyntheticCalendar calendar) {
+        BenchmarkEnvironment environment = new BenchmarkEnvironment(calendar);
+        return new CalendarEventLoader(environment.context, new CalendarEventLoader.EventSource() {
+            @Override
+            public EventStore query(long beginMillis, long endMillis) {
+                return calendar.events();
+            }
+        }, new CalendarEventLoader.Listener() {
+            @Override
+            public void onSnapshotPublished(EventSnapshot snapshot) {
+            }
+        });
+    }
+}
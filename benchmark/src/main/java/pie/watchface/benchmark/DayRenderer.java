@@ -0,0 +1,152 @@
+package pie.watchface.benchmark;
+
+import android.graphics.Rect;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+
+import pie.watchface.CalendarEventLoader;
+import pie.watchface.EventSnapshot;
+import pie.watchface.EventStore;
+import pie.watchface.PieWatchFace;
+
+/**
+ * Renders a whole simulated day of the watch face with a {@link RasterRenderTarget}, one frame every few
+ * minutes, and reports the average time per frame. The frames can be written as PNG files, or compared
+ * against a directory of previously written ones to catch rendering changes.
+ * <p>
+ * Arguments: [--events n] [--seed n] [--step minutes] [--ambient] [--out dir] [--compare dir]
+ */
+public class DayRenderer {
+
+    // the per channel difference below which two pixels are considered the same
+    private static final int TOLERANCE = 2;
+
+    // the simulated day, the same in every time zone as the dial only depends on the local time
+    private static final int YEAR = 2016;
+    private static final int MONTH = Calendar.JANUARY;
+    private static final int DAY = 4;
+
+    private int mEventCount = 12;
+    private long mSeed = 42;
+    private int mStepMinutes = 15;
+    private boolean mAmbient;
+    private File mOutDir;
+    private File mCompareDir;
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        DayRenderer renderer = new DayRenderer();
+        renderer.parse(args);
+        System.exit(renderer.run() ? 0 : 1);
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ("--events".equals(arg)) mEventCount = Integer.parseInt(args[++i]);
+            else if ("--seed".equals(arg)) mSeed = Long.parseLong(args[++i]);
+            else if ("--step".equals(arg)) mStepMinutes = Integer.parseInt(args[++i]);
+            else if ("--ambient".equals(arg)) mAmbient = true;
+            else if ("--out".equals(arg)) mOutDir = new File(args[++i]);
+            else if ("--compare".equals(arg)) mCompareDir = new File(args[++i]);
+            else throw new IllegalArgumentException("unknown argument " + arg);
+        }
+    }
+
+    /**
+     * @return whether all frames matched their golden images, always true without --compare
+     */
+    public boolean run() throws IOException {
+        Calendar day = Calendar.getInstance();
+        day.clear();
+        day.set(YEAR, MONTH, DAY);
+        final long dayStart = day.getTimeInMillis();
+        final long[] now = {dayStart};
+
+        final SyntheticCalendar calendar = new SyntheticCalendar(mEventCount, mSeed, dayStart, 24 * 60 * 60 * 1000L);
+        BenchmarkEnvironment environment = new BenchmarkEnvironment(calendar);
+        CalendarEventLoader loader = new CalendarEventLoader(environment.context, new CalendarEventLoader.EventSource() {
+            @Override
+            public EventStore query(long beginMillis, long endMillis) {
+                return calendar.events(beginMillis, endMillis);
+            }
+        }, new CalendarEventLoader.Listener() {
+            @Override
+            public void onSnapshotPublished(EventSnapshot snapshot) {
+            }
+        });
+        loader.setClock(new CalendarEventLoader.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return now[0];
+            }
+        });
+
+        PieWatchFace watchFace = new PieWatchFace(environment.context, loader);
+        RasterRenderTarget target = new RasterRenderTarget(BenchmarkEnvironment.SCREEN_SIZE, BenchmarkEnvironment.SCREEN_SIZE);
+        Rect bounds = new Rect(0, 0, BenchmarkEnvironment.SCREEN_SIZE, BenchmarkEnvironment.SCREEN_SIZE);
+        Rect peekCardBounds = new Rect();
+
+        if (mOutDir != null && !mOutDir.isDirectory() && !mOutDir.mkdirs())
+            throw new IOException("can't create " + mOutDir);
+
+        int frames = 0;
+        int mismatches = 0;
+        long renderNanos = 0;
+
+        try {
+            for (int minutes = 0; minutes < 24 * 60; minutes += mStepMinutes) {
+                now[0] = dayStart + minutes * 60 * 1000L;
+                loader.refreshIfNeeded();
+
+                long start = System.nanoTime();
+                watchFace.draw(target, bounds, peekCardBounds, mAmbient, now[0]);
+                renderNanos += System.nanoTime() - start;
+                frames++;
+
+                String name = String.format(Locale.US, "%s-%02d%02d.png", mAmbient ? "ambient" : "interactive", minutes / 60, minutes % 60);
+                if (mOutDir != null)
+                    ImageIO.write(target.getImage(), "png", new File(mOutDir, name));
+
+                if (mCompareDir != null && !matchesGolden(target.getImage(), new File(mCompareDir, name))) {
+                    System.out.println("mismatch: " + name);
+                    mismatches++;
+                }
+            }
+        } finally {
+            watchFace.destroy();
+        }
+
+        System.out.println(String.format(Locale.US, "%d frames, %.3f ms/frame%s", frames, renderNanos / 1e6 / frames,
+                mCompareDir != null ? ", " + mismatches + " mismatches" : ""));
+        return mismatches == 0;
+    }
+
+    private static boolean matchesGolden(BufferedImage image, File golden) throws IOException {
+        if (!golden.isFile())
+            return false;
+
+        BufferedImage expected = ImageIO.read(golden);
+        if (expected.getWidth() != image.getWidth() || expected.getHeight() != image.getHeight())
+            return false;
+
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                int a = image.getRGB(x, y);
+                int b = expected.getRGB(x, y);
+                for (int shift = 0; shift < 32; shift += 8) {
+                    if (Math.abs(((a >>> shift) & 0xFF) - ((b >>> shift) & 0xFF)) > TOLERANCE)
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,161 @@
+package pie.watchface.benchmark;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+
+import java.util.List;
+
+import pie.watchface.BackgroundImage;
+import pie.watchface.CalendarEventLoader;
+import pie.watchface.PieWatchFace;
+import pie.watchface.R;
+import pie.watchface.RenderTarget;
+
+/**
+ * Full frames of {@link PieWatchFace#draw(Canvas, Rect, Rect, boolean)}, one op is one frame.
+ * <p>
+ * The steady benchmarks draw the same state over and over, as happens between two minute ticks, which only blits
+ * the last frame. The redraw benchmarks invalidate it first, so every frame runs the whole pipeline.
+ * The mode switch benchmarks alternate between ambient and interactive, so every frame has to
+ * lay out and render all events again. The sweep benchmarks draw interactive frames in smooth sweep mode,
+ * where the hand and horizon move on every frame. The raster benchmarks draw the interactive frame with the
+ * software {@link RasterRenderTarget} instead, which includes the cost of actually filling the pixels.
+ * The first frame benchmarks create a new watch face for every frame, background image decode included.
+ * The second engine benchmarks create a new watch face for every frame too, but one sharing the loader and
+ * the background image of the existing face, as the engines of the process do.
+ */
+public class FrameBenchmarks {
+
+    private static final int[] EVENT_COUNTS = {0, 6, 24, 96};
+
+    public static void addTo(List<Benchmark> benchmarks) {
+        for (final int eventCount : EVENT_COUNTS) {
+            benchmarks.add(new FrameBenchmark("frame.interactive[" + eventCount + "]", eventCount) {
+                @Override
+                public void run() {
+                    drawFrame(false);
+                }
+            });
+
+            benchmarks.add(new FrameBenchmark("frame.redraw[" + eventCount + "]", eventCount) {
+                @Override
+                public void run() {
+                    mWatchFace.invalidate();
+                    drawFrame(false);
+                }
+            });
+
+            benchmarks.add(new FrameBenchmark("frame.ambient[" + eventCount + "]", eventCount) {
+                @Override
+                public void run() {
+                    drawFrame(true);
+                }
+            });
+
+            benchmarks.add(new FrameBenchmark("frame.modeSwitch[" + eventCount + "]", eventCount) {
+                private boolean mAmbient;
+
+                @Override
+                public void run() {
+                    mAmbient = !mAmbient;
+                    drawFrame(mAmbient);
+                }
+            });
+
+            benchmarks.add(new FrameBenchmark("frame.sweep[" + eventCount + "]", eventCount) {
+                @Override
+                public void setUp() {
+                    super.setUp();
+                    mWatchFace.setSmoothSweep(true);
+                }
+
+                @Override
+                public void run() {
+                    drawFrame(false);
+                }
+            });
+
+            benchmarks.add(new FrameBenchmark("frame.raster[" + eventCount + "]", eventCount) {
+                private final RasterRenderTarget mTarget = new RasterRenderTarget(BenchmarkEnvironment.SCREEN_SIZE, BenchmarkEnvironment.SCREEN_SIZE);
+
+                @Override
+                public void run() {
+                    mWatchFace.invalidate();
+                    drawFrame(mTarget, false);
+                }
+            });
+
+            benchmarks.add(new FrameBenchmark("frame.first[" + eventCount + "]", eventCount) {
+                @Override
+                public void run() {
+                    tearDown();
+                    setUp();
+                    drawFrame(false);
+                }
+            });
+
+            benchmarks.add(new FrameBenchmark("frame.secondEngine[" + eventCount + "]", eventCount) {
+                private final Canvas mSecondCanvas = new Canvas();
+
+                @Override
+                public void setUp() {
+                    super.setUp();
+                    drawFrame(false);
+                }
+
+                @Override
+                public void run() {
+                    PieWatchFace watchFace = new PieWatchFace(mContext, mLoader, mBackgroundImage);
+                    watchFace.draw(mSecondCanvas, mBounds, mPeekCardBounds, false);
+                    sink += mSecondCanvas.getDrawCallCount();
+                    watchFace.destroy();
+                }
+            });
+        }
+    }
+
+    private static abstract class FrameBenchmark extends Benchmark {
+
+        private final int mEventCount;
+        private final Canvas mCanvas = new Canvas();
+        final Rect mBounds = new Rect(0, 0, BenchmarkEnvironment.SCREEN_SIZE, BenchmarkEnvironment.SCREEN_SIZE);
+        final Rect mPeekCardBounds = new Rect();
+        Context mContext;
+        CalendarEventLoader mLoader;
+        BackgroundImage mBackgroundImage;
+        PieWatchFace mWatchFace;
+
+        FrameBenchmark(String name, int eventCount) {
+            super(name);
+            this.mEventCount = eventCount;
+        }
+
+        @Override
+        public void setUp() {
+            SyntheticCalendar calendar = new SyntheticCalendar(mEventCount, 42);
+            mContext = new BenchmarkEnvironment(calendar).context;
+            mLoader = CalendarBenchmarks.newLoader(calendar);
+            mBackgroundImage = new BackgroundImage(mContext, R.drawable.bg);
+            mWatchFace = new PieWatchFace(mContext, mLoader, mBackgroundImage);
+            mLoader.requestLoad();
+        }
+
+        void drawFrame(boolean ambient) {
+            mWatchFace.draw(mCanvas, mBounds, mPeekCardBounds, ambient);
+            sink += mCanvas.getDrawCallCount();
+        }
+
+        void drawFrame(RenderTarget target, boolean ambient) {
+            mWatchFace.draw(target, mBounds, mPeekCardBounds, ambient, System.currentTimeMillis());
+            sink += target.getWidth();
+        }
+
+        @Override
+        public void tearDown() {
+            mWatchFace.destroy();
+            mLoader.quit();
+            mBackgroundImage.release();
+        }
+    }
+}
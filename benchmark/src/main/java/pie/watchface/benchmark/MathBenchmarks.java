@@ -0,0 +1,75 @@
+package pie.watchface.benchmark;
+
+import android.graphics.Point;
+
+import java.util.Date;
+import java.util.List;
+
+import pie.watchface.CircleProjection;
+import pie.watchface.PieUtils;
+import pie.watchface.TimeEngine;
+
+/**
+ * The angle and circle math in {@link PieUtils} and the local time math of {@link TimeEngine}, one op is one call.
+ */
+public class MathBenchmarks {
+
+    private static final int MINUTES = 24 * 60;
+
+    public static void addTo(List<Benchmark> benchmarks) {
+        benchmarks.add(new Benchmark("math.getAngleForMinutes", MINUTES) {
+            @Override
+            public void run() {
+                float sum = 0;
+                for (int minutes = 0; minutes < MINUTES; minutes++)
+                    sum += PieUtils.getAngleForMinutes(minutes);
+                sink += (long) sum;
+            }
+        });
+
+        benchmarks.add(new Benchmark("math.getAngleForDate") {
+            private final Date mDate = new Date();
+
+            @Override
+            public void run() {
+                sink += (long) PieUtils.getAngleForDate(mDate, true);
+            }
+        });
+
+        benchmarks.add(new Benchmark("math.TimeEngine.getMinuteOfDial", MINUTES) {
+            private final TimeEngine mTime = TimeEngine.getInstance();
+            private final long mStart = System.currentTimeMillis();
+
+            @Override
+            public void run() {
+                long sum = 0;
+                for (int minutes = 0; minutes < MINUTES; minutes++)
+                    sum += mTime.getMinuteOfDial(mStart + minutes * TimeEngine.MILLIS_PER_MINUTE);
+                sink += sum;
+            }
+        });
+
+        benchmarks.add(new Benchmark("math.getPointOnTheCircleCircumference", PieUtils.DIAL_POSITIONS) {
+            @Override
+            public void run() {
+                long sum = 0;
+                for (int i = 0; i < PieUtils.DIAL_POSITIONS; i++)
+                    sum += PieUtils.getPointOnTheCircleCircumference(160, i * 0.5, 160, 160).x;
+                sink += sum;
+            }
+        });
+
+        benchmarks.add(new Benchmark("math.CircleProjection.project", PieUtils.DIAL_POSITIONS) {
+            private final CircleProjection mDial = new CircleProjection(160, 160, 160);
+            private final Point mPoint = new Point();
+
+            @Override
+            public void run() {
+                long sum = 0;
+                for (int i = 0; i < PieUtils.DIAL_POSITIONS; i++)
+                    sum += mDial.project(i * 0.5f, mPoint).x;
+                sink += sum;
+            }
+        });
+    }
+}
@@ -0,0 +1,149 @@
+package pie.watchface.benchmark;
+
+import java.awt.Paint;
+import java.awt.PaintContext;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Transparency;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+import pie.watchface.Gradient;
+
+/**
+ * A java2d paint for a {@link Gradient}, evaluated per pixel in device space like an Android shader:
+ * clamped to the first and last color outside the positions, a linear gradient optionally mirrored.
+ */
+public class RasterGradient implements Paint {
+
+    private final Gradient mGradient;
+    private final float[] mPositions;
+
+    // the rotation around the gradient's first point, see Brush#setGradientRotation()
+    private double mSin;
+    private double mCos = 1;
+    private float mRotation;
+
+    public RasterGradient(Gradient gradient) {
+        this.mGradient = gradient;
+
+        // without positions, the colors are spread evenly
+        float[] positions = gradient.positions;
+        if (positions == null) {
+            positions = new float[gradient.colors.length];
+            for (int i = 0; i < positions.length; i++)
+                positions[i] = positions.length > 1 ? i / (float) (positions.length - 1) : 0;
+        }
+        this.mPositions = positions;
+    }
+
+    public void setRotation(float degrees) {
+        if (degrees == mRotation)
+            return;
+
+        double radians = Math.toRadians(degrees);
+        mSin = Math.sin(radians);
+        mCos = Math.cos(radians);
+        mRotation = degrees;
+    }
+
+    @Override
+    public PaintContext createContext(ColorModel cm, Rectangle deviceBounds, Rectangle2D userBounds, AffineTransform xform, RenderingHints hints) {
+        return new PaintContext() {
+            @Override
+            public void dispose() {
+            }
+
+            @Override
+            public ColorModel getColorModel() {
+                return ColorModel.getRGBdefault();
+            }
+
+            @Override
+            public Raster getRaster(int x, int y, int w, int h) {
+                WritableRaster raster = getColorModel().createCompatibleWritableRaster(w, h);
+                int[] pixels = new int[w];
+                for (int row = 0; row < h; row++) {
+                    for (int column = 0; column < w; column++)
+                        pixels[column] = colorAt(x + column + 0.5f, y + row + 0.5f);
+                    raster.setDataElements(0, row, w, 1, pixels);
+                }
+                return raster;
+            }
+        };
+    }
+
+    @Override
+    public int getTransparency() {
+        return Transparency.TRANSLUCENT;
+    }
+
+    /**
+     * @return the ARGB color of the gradient at the given device position
+     */
+    public int colorAt(float x, float y) {
+        Gradient gradient = mGradient;
+        float t;
+
+        if (mRotation != 0) {
+            // rotate the position back, instead of the gradient forward
+            float dx = x - gradient.x0;
+            float dy = y - gradient.y0;
+            x = (float) (gradient.x0 + dx * mCos + dy * mSin);
+            y = (float) (gradient.y0 - dx * mSin + dy * mCos);
+        }
+
+        if (gradient.type == Gradient.SWEEP) {
+            double degrees = Math.toDegrees(Math.atan2(y - gradient.y0, x - gradient.x0)) - gradient.startAngle;
+            degrees %= 360;
+            if (degrees < 0) degrees += 360;
+            t = (float) (degrees / 360);
+        } else {
+            float dx = gradient.x1 - gradient.x0;
+            float dy = gradient.y1 - gradient.y0;
+            float lengthSquared = dx * dx + dy * dy;
+            t = lengthSquared == 0 ? 0 : ((x - gradient.x0) * dx + (y - gradient.y0) * dy) / lengthSquared;
+
+            if (gradient.mirror) {
+                t = Math.abs(t) % 2;
+                if (t > 1) t = 2 - t;
+            }
+        }
+
+        return interpolate(t);
+    }
+
+    private int interpolate(float t) {
+        int[] colors = mGradient.colors;
+        float[] positions = mPositions;
+        int last = colors.length - 1;
+
+        if (t <= positions[0])
+            return colors[0];
+        if (t >= positions[last])
+            return colors[last];
+
+        int i = 1;
+        while (positions[i] < t)
+            i++;
+
+        float span = positions[i] - positions[i - 1];
+        float f = span == 0 ? 1 : (t - positions[i - 1]) / span;
+        return blend(colors[i - 1], colors[i], f);
+    }
+
+    private static int blend(int from, int to, float f) {
+        int a = channel(from >>> 24, to >>> 24, f);
+        int r = channel((from >> 16) & 0xFF, (to >> 16) & 0xFF, f);
+        int g = channel((from >> 8) & 0xFF, (to >> 8) & 0xFF, f);
+        int b = channel(from & 0xFF, to & 0xFF, f);
+        return (a << 24) | (r << 16) | (g << 8) | b;
+    }
+
+    private static int channel(int from, int to, float f) {
+        return Math.round(from + (to - from) * f);
+    }
+}
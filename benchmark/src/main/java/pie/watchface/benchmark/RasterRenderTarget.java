@@ -0,0 +1,282 @@
+package pie.watchface.benchmark;
+
+import android.graphics.Bitmap;
+
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import pie.watchface.Brush;
+import pie.watchface.Gradient;
+import pie.watchface.RenderTarget;
+
+/**
+ * A software {@link RenderTarget} drawing into a plain JVM image, for rendering frames without a device,
+ * e.g. golden images or frame cost profiling on a build box.
+ * <p>
+ * Gradients are evaluated per pixel the same way Android does. Shadows are not drawn and fonts are the
+ * JVM's, so text is close to, but not exactly, what a watch shows.
+ */
+public class RasterRenderTarget implements RenderTarget {
+
+    private final BufferedImage mImage;
+    private final Graphics2D mGraphics;
+    private final FontRenderContext mFontRenderContext;
+
+    // the converted pixels of every bitmap drawn so far, bitmaps are expected not to change once drawn
+    private final Map<Bitmap, BufferedImage> mBitmapImages = new IdentityHashMap<>();
+
+    private final Arc2D.Float mArc = new Arc2D.Float();
+    private final Line2D.Float mLine = new Line2D.Float();
+    private final Ellipse2D.Float mEllipse = new Ellipse2D.Float();
+    private final Rectangle2D.Float mRect = new Rectangle2D.Float();
+    private final AffineTransform mIdentity = new AffineTransform();
+
+    public RasterRenderTarget(int width, int height) {
+        this(new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB));
+    }
+
+    private RasterRenderTarget(BufferedImage image) {
+        this.mImage = image;
+        this.mGraphics = image.createGraphics();
+        this.mGraphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        this.mGraphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+        this.mGraphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+        this.mFontRenderContext = new FontRenderContext(null, true, true);
+    }
+
+    /**
+     * @return the image drawn into, its pixels are ARGB like those of an Android bitmap
+     */
+    public BufferedImage getImage() {
+        return mImage;
+    }
+
+    @Override
+    public int getWidth() {
+        return mImage.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return mImage.getHeight();
+    }
+
+    @Override
+    public void clear(int color) {
+        mGraphics.setComposite(AlphaComposite.Src);
+        mGraphics.setTransform(mIdentity);
+        mGraphics.setPaint(new Color(color, true));
+        mGraphics.fillRect(0, 0, mImage.getWidth(), mImage.getHeight());
+        mGraphics.setComposite(AlphaComposite.SrcOver);
+    }
+
+    @Override
+    public void drawArc(float left, float top, float right, float bottom, float startAngle, float sweepAngle, Brush brush) {
+        // java2d angles run counter clockwise
+        mArc.setArc(left, top, right - left, bottom - top, -startAngle, -sweepAngle, Arc2D.PIE);
+        drawShape(mArc, brush);
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Brush brush) {
+        mLine.setLine(startX, startY, stopX, stopY);
+        apply(brush);
+        mGraphics.draw(mLine);
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, Brush brush) {
+        mEllipse.setFrame(centerX - radius, centerY - radius, radius * 2, radius * 2);
+        drawShape(mEllipse, brush);
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Brush brush) {
+        mRect.setRect(left, top, right - left, bottom - top);
+        drawShape(mRect, brush);
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top) {
+        BufferedImage image = mBitmapImages.get(bitmap);
+        if (image == null) {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            image.setRGB(0, 0, width, height, pixels, 0, width);
+            mBitmapImages.put(bitmap, image);
+        }
+
+        mGraphics.setTransform(mIdentity);
+        mGraphics.drawImage(image, Math.round(left), Math.round(top), null);
+    }
+
+    @Override
+    public void drawTextOnLine(String text, float startX, float startY, float stopX, float stopY, float hOffset, float vOffset, Brush brush) {
+        RasterBrush rasterBrush = apply(brush);
+
+        float dx = stopX - startX;
+        float dy = stopY - startY;
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+
+        // like on a path, the alignment is relative to the length of the line
+        float x = hOffset;
+        if (brush.getTextAlign() != Brush.Align.LEFT) {
+            float width = (float) rasterBrush.font.getStringBounds(text, mFontRenderContext).getWidth();
+            x += brush.getTextAlign() == Brush.Align.CENTER ? (length - width) / 2 : length - width;
+        }
+
+        mGraphics.translate(startX, startY);
+        mGraphics.rotate(Math.atan2(dy, dx));
+        mGraphics.drawString(text, x, vOffset);
+        mGraphics.setTransform(mIdentity);
+    }
+
+    @Override
+    public float measureText(String text, Brush brush) {
+        return (float) rasterBrushFor(brush).font.getStringBounds(text, mFontRenderContext).getWidth();
+    }
+
+    @Override
+    public float getTextAscent(Brush brush) {
+        return rasterBrushFor(brush).font.getLineMetrics("", mFontRenderContext).getAscent();
+    }
+
+    @Override
+    public float getTextDescent(Brush brush) {
+        return rasterBrushFor(brush).font.getLineMetrics("", mFontRenderContext).getDescent();
+    }
+
+    @Override
+    public Layer createLayer(int width, int height, int format) {
+        return new RasterLayer(width, height, format != LAYER_TRANSLUCENT);
+    }
+
+    @Override
+    public void drawLayer(Layer layer, float left, float top) {
+        mGraphics.setTransform(mIdentity);
+        mGraphics.drawImage(((RasterLayer) layer).mTarget.mImage, Math.round(left), Math.round(top), null);
+    }
+
+    @Override
+    public void drawLayerOnLine(Layer layer, float startX, float startY, float stopX, float stopY, float x, float y) {
+        mGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        mGraphics.translate(startX, startY);
+        mGraphics.rotate(Math.atan2(stopY - startY, stopX - startX));
+        mGraphics.translate(x, y);
+        mGraphics.drawImage(((RasterLayer) layer).mTarget.mImage, 0, 0, null);
+        mGraphics.setTransform(mIdentity);
+    }
+
+    private void drawShape(Shape shape, Brush brush) {
+        apply(brush);
+        if (brush.isStroke())
+            mGraphics.draw(shape);
+        else
+            mGraphics.fill(shape);
+    }
+
+    private RasterBrush apply(Brush brush) {
+        RasterBrush rasterBrush = rasterBrushFor(brush);
+
+        mGraphics.setTransform(mIdentity);
+        mGraphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                brush.isAntiAlias() ? RenderingHints.VALUE_ANTIALIAS_ON : RenderingHints.VALUE_ANTIALIAS_OFF);
+        mGraphics.setStroke(rasterBrush.stroke);
+        mGraphics.setFont(rasterBrush.font);
+
+        Gradient gradient = brush.getGradient();
+        if (gradient != null) {
+            if (!(gradient.nativeGradient instanceof RasterGradient))
+                gradient.nativeGradient = new RasterGradient(gradient);
+            RasterGradient paint = (RasterGradient) gradient.nativeGradient;
+            paint.setRotation(brush.getGradientRotation());
+            mGraphics.setPaint(paint);
+        } else {
+            mGraphics.setPaint(new Color(brush.getColor(), true));
+        }
+
+        return rasterBrush;
+    }
+
+    private static RasterBrush rasterBrushFor(Brush brush) {
+        if (!(brush.nativeBrush instanceof RasterBrush) || brush.nativeGeneration != brush.getGeneration()) {
+            brush.nativeBrush = new RasterBrush(brush);
+            brush.nativeGeneration = brush.getGeneration();
+        }
+        return (RasterBrush) brush.nativeBrush;
+    }
+
+    /**
+     * The java2d stroke and font of a brush
+     */
+    private static class RasterBrush {
+
+        final BasicStroke stroke;
+        final Font font;
+
+        RasterBrush(Brush brush) {
+            stroke = new BasicStroke(brush.getStrokeWidth(), brush.isRoundCap() ? BasicStroke.CAP_ROUND : BasicStroke.CAP_BUTT,
+                    BasicStroke.JOIN_MITER);
+
+            int style = Font.PLAIN;
+            if ((brush.getFontStyle() & Brush.FONT_BOLD) != 0) style |= Font.BOLD;
+            if ((brush.getFontStyle() & Brush.FONT_ITALIC) != 0) style |= Font.ITALIC;
+            font = new Font(Font.SANS_SERIF, style, 1).deriveFont(brush.getTextSize());
+        }
+    }
+
+    private static class RasterLayer implements Layer {
+
+        private final RasterRenderTarget mTarget;
+        private final boolean mOpaque;
+
+        RasterLayer(int width, int height, boolean opaque) {
+            this.mTarget = new RasterRenderTarget(new BufferedImage(width, height,
+                    opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB));
+            this.mOpaque = opaque;
+        }
+
+        @Override
+        public int getWidth() {
+            return mTarget.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return mTarget.getHeight();
+        }
+
+        @Override
+        public RenderTarget getTarget() {
+            return mTarget;
+        }
+
+        @Override
+        public void clear() {
+            mTarget.clear(mOpaque ? 0xFF000000 : 0);
+        }
+
+        @Override
+        public void release() {
+            mTarget.mGraphics.dispose();
+        }
+    }
+}
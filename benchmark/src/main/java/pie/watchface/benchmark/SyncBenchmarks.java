@@ -0,0 +1,81 @@
+package pie.watchface.benchmark;
+
+import java.util.List;
+
+import pie.watchface.EventBatch;
+import pie.watchface.EventSyncSender;
+import pie.watchface.InProcessSyncTransport;
+import pie.watchface.SyncedEventSource;
+
+/**
+ * The phone to watch event sync over the in-process transport. The full benchmarks encode and decode
+ * the whole window, as after a restart of either side. The delta benchmarks move one event per op, and
+ * the sender diffs the window, sends the delta and the watch applies it.
+ */
+public class SyncBenchmarks {
+
+    private static final int[] EVENT_COUNTS = {10, 50, 200};
+
+    private static final long WINDOW_MILLIS = 48 * 60 * 60 * 1000L;
+
+    public static void addTo(List<Benchmark> benchmarks) {
+        for (final int eventCount : EVENT_COUNTS) {
+            benchmarks.add(new Benchmark("sync.full[" + eventCount + "]") {
+                private EventBatch mWindow;
+
+                @Override
+                public void setUp() {
+                    long now = System.currentTimeMillis();
+                    mWindow = new SyntheticCalendar(eventCount, 42, now, WINDOW_MILLIS).window(now + WINDOW_MILLIS, -1, 0);
+                }
+
+                @Override
+                public void run() {
+                    sink += EventBatch.decode(mWindow.asFull(1).encode()).size();
+                }
+            });
+
+            benchmarks.add(new Benchmark("sync.delta[" + eventCount + "]") {
+                private final EventSyncSender mSender = new EventSyncSender();
+                private InProcessSyncTransport mPhone;
+                private SyncedEventSource mWatch;
+                private EventBatch[] mWindows;
+                private int mOp;
+
+                @Override
+                public void setUp() {
+                    InProcessSyncTransport[] transports = InProcessSyncTransport.pair();
+                    mPhone = transports[0];
+                    final InProcessSyncTransport watch = transports[1];
+
+                    // the watch's requests are answered right away, like the phone's listener service does
+                    mPhone.setReceiver(new InProcessSyncTransport.Receiver() {
+                        @Override
+                        public void onMessage(String path, byte[] data) {
+                            mSender.sync(mWindows[mOp & 1], EventBatch.decodeRequest(data), mPhone);
+                        }
+                    });
+
+                    long now = System.currentTimeMillis();
+                    SyntheticCalendar calendar = new SyntheticCalendar(eventCount, 42, now, WINDOW_MILLIS);
+                    mWindows = new EventBatch[]{
+                            calendar.window(now + WINDOW_MILLIS, eventCount / 2, 0),
+                            calendar.window(now + WINDOW_MILLIS, eventCount / 2, 15)
+                    };
+                    mWatch = new SyncedEventSource(watch);
+                }
+
+                @Override
+                public void run() {
+                    mOp++;
+                    sink += mSender.push(mWindows[mOp & 1], mPhone);
+                }
+
+                @Override
+                public void tearDown() {
+                    mWatch.close();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package pie.watchface.benchmark;
+
+import android.database.Cursor;
+import android.provider.CalendarContract;
+
+import java.util.Random;
+
+import pie.watchface.EventBatch;
+import pie.watchface.EventStore;
+
+/**
+ * A reproducible set of events spread over the next 12 hours, or any other span, available as provider rows
+ * or as a ready made {@link EventStore}.
+ */
+public class SyntheticCalendar {
+
+    private static final String[] TITLES = {
+            "Standup", "Lunch at this restaurant", "Conference call about something", "1:1",
+            "Exams Evaluation tonight", "Dinner with Amy and John", "Skype call with people on MARS", "Gym"
+    };
+
+    private static final int[] COLORS = {0xffee6161, 0xff009688, 0xff2196F3, 0xffcd3737};
+
+    private final long[] mIds;
+    private final long[] mStarts;
+    private final long[] mEnds;
+    private final int[] mTitles;
+    private final int[] mColors;
+
+    public SyntheticCalendar(int eventCount, long seed) {
+        this(eventCount, seed, System.currentTimeMillis(), 12 * 60 * 60 * 1000L);
+    }
+
+    /**
+     * @param startMillis the earliest start of an event
+     * @param spanMillis the span after the start the events start in
+     */
+    public SyntheticCalendar(int eventCount, long seed, long startMillis, long spanMillis) {
+        Random random = new Random(seed);
+        long now = startMillis;
+        long window = spanMillis;
+
+        mIds = new long[eventCount];
+        mStarts = new long[eventCount];
+        mEnds = new long[eventCount];
+        mTitles = new int[eventCount];
+        mColors = new int[eventCount];
+
+        for (int i = 0; i < eventCount; i++) {
+            // whole minutes, between 15 minutes and 2 hours long
+            long start = now + (random.nextInt((int) (window / 60000))) * 60000L;
+            mIds[i] = i + 1;
+            mStarts[i] = start;
+            mEnds[i] = start + (15 + random.nextInt(106)) * 60000L;
+            mTitles[i] = random.nextInt(TITLES.length);
+            mColors[i] = COLORS[random.nextInt(COLORS.length)];
+        }
+    }
+
+    public int size() {
+        return mIds.length;
+    }
+
+    public EventStore events() {
+        return events(Long.MIN_VALUE, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return the events overlapping the given span
+     */
+    public EventStore events(long beginMillis, long endMillis) {
+        EventStore.Builder events = new EventStore.Builder(mIds.length);
+        for (int i = 0; i < mIds.length; i++) {
+            if (mEnds[i] > beginMillis && mStarts[i] < endMillis)
+                events.add(mIds[i], TITLES[mTitles[i]], mStarts[i], mEnds[i], "Room " + i, false, mColors[i]);
+        }
+        return events.build();
+    }
+
+    /**
+     * @return all events as the window the phone syncs to the watch, with the event at the given index moved
+     * by the given minutes, to tell one window from the next
+     */
+    public EventBatch window(long windowEndMillis, int movedIndex, int movedMinutes) {
+        EventBatch.Builder events = new EventBatch.Builder(mIds.length);
+        for (int i = 0; i < mIds.length; i++) {
+            long shift = i == movedIndex ? movedMinutes * 60000L : 0;
+            events.add(mIds[i], TITLES[mTitles[i]], mStarts[i] + shift, mEnds[i] + shift, "Room " + i, false, mColors[i], 1, false);
+        }
+        return events.buildWindow(windowEndMillis);
+    }
+
+    /**
+     * @return a cursor over all events, with the columns of the given projection
+     */
+    public Cursor query(final String[] projection) {
+        return new Cursor() {
+            private int mPosition = -1;
+
+            @Override
+            public int getCount() {
+                return mIds.length;
+            }
+
+            @Override
+            public boolean moveToNext() {
+                return ++mPosition < mIds.length;
+            }
+
+            @Override
+            public boolean isNull(int columnIndex) {
+                return false;
+            }
+
+            @Override
+            public String getString(int columnIndex) {
+                String column = projection[columnIndex];
+                if (CalendarContract.Events.TITLE.equals(column))
+                    return TITLES[mTitles[mPosition]];
+                if (CalendarContract.Events.EVENT_LOCATION.equals(column))
+                    return "Room " + mPosition;
+                return String.valueOf(getLong(columnIndex));
+            }
+
+            @Override
+            public long getLong(int columnIndex) {
+                String column = projection[columnIndex];
+                if (CalendarContract.Instances.BEGIN.equals(column) || CalendarContract.Events.DTSTART.equals(column))
+                    return mStarts[mPosition];
+                if (CalendarContract.Instances.END.equals(column) || CalendarContract.Events.DTEND.equals(column))
+                    return mEnds[mPosition];
+                if (CalendarContract.Events.DISPLAY_COLOR.equals(column))
+                    return mColors[mPosition];
+                if (CalendarContract.Events._ID.equals(column))
+                    return mIds[mPosition];
+                return 0;
+            }
+
+            @Override
+            public int getInt(int columnIndex) {
+                return (int) getLong(columnIndex);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
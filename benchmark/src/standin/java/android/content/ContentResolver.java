@@ -0,0 +1,31 @@
+package android.content;
+
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * Stand-in for the content resolver, queries are answered by a {@link QueryHandler}.
+ */
+public class ContentResolver {
+
+    public interface QueryHandler {
+        Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder);
+    }
+
+    private final QueryHandler mQueryHandler;
+
+    public ContentResolver(QueryHandler queryHandler) {
+        this.mQueryHandler = queryHandler;
+    }
+
+    public final Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        return mQueryHandler.query(uri, projection, selection, selectionArgs, sortOrder);
+    }
+
+    public final void registerContentObserver(Uri uri, boolean notifyForDescendants, ContentObserver observer) {
+    }
+
+    public final void unregisterContentObserver(ContentObserver observer) {
+    }
+}
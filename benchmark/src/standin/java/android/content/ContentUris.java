@@ -0,0 +1,10 @@
+package android.content;
+
+import android.net.Uri;
+
+public class ContentUris {
+
+    public static Uri.Builder appendId(Uri.Builder builder, long id) {
+        return builder.appendPath(String.valueOf(id));
+    }
+}
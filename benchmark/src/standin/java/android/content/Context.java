@@ -0,0 +1,39 @@
+package android.content;
+
+import android.content.res.Resources;
+
+import java.io.File;
+
+/**
+ * Stand-in for the Android context, resources and content resolver are handed in by the benchmark.
+ */
+public class Context {
+
+    private final Resources mResources;
+    private final ContentResolver mContentResolver;
+
+    public Context(Resources resources, ContentResolver contentResolver) {
+        this.mResources = resources;
+        this.mContentResolver = contentResolver;
+    }
+
+    public Context getApplicationContext() {
+        return this;
+    }
+
+    public Resources getResources() {
+        return mResources;
+    }
+
+    public ContentResolver getContentResolver() {
+        return mContentResolver;
+    }
+
+    public File getFilesDir() {
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+
+    public File getNoBackupFilesDir() {
+        return new File(System.getProperty("java.io.tmpdir"));
+    }
+}
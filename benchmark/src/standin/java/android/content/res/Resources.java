@@ -0,0 +1,16 @@
+package android.content.res;
+
+import android.util.DisplayMetrics;
+
+public class Resources {
+
+    private final DisplayMetrics mDisplayMetrics;
+
+    public Resources(DisplayMetrics displayMetrics) {
+        this.mDisplayMetrics = displayMetrics;
+    }
+
+    public DisplayMetrics getDisplayMetrics() {
+        return mDisplayMetrics;
+    }
+}
@@ -0,0 +1,20 @@
+package android.database;
+
+import java.io.Closeable;
+
+public interface Cursor extends Closeable {
+
+    int getCount();
+
+    boolean moveToNext();
+
+    boolean isNull(int columnIndex);
+
+    String getString(int columnIndex);
+
+    long getLong(int columnIndex);
+
+    int getInt(int columnIndex);
+
+    void close();
+}
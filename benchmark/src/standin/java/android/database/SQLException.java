@@ -0,0 +1,13 @@
+package android.database;
+
+public class SQLException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SQLException() {
+    }
+
+    public SQLException(String error) {
+        super(error);
+    }
+}
@@ -0,0 +1,96 @@
+package android.graphics;
+
+import java.util.Arrays;
+
+/**
+ * Stand-in for an Android bitmap backed by an int array, so it costs the same memory as the real one.
+ */
+public final class Bitmap {
+
+    public enum Config {
+        ALPHA_8(1), RGB_565(2), ARGB_4444(2), ARGB_8888(4);
+
+        final int bytesPerPixel;
+
+        Config(int bytesPerPixel) {
+            this.bytesPerPixel = bytesPerPixel;
+        }
+    }
+
+    private final int mWidth;
+    private final int mHeight;
+    private final Config mConfig;
+    private int[] mPixels;
+
+    private Bitmap(int width, int height, Config config) {
+        this.mWidth = width;
+        this.mHeight = height;
+        this.mConfig = config;
+        this.mPixels = new int[width * height];
+    }
+
+    public static Bitmap createBitmap(int width, int height, Config config) {
+        return new Bitmap(width, height, config);
+    }
+
+    public static Bitmap createScaledBitmap(Bitmap src, int dstWidth, int dstHeight, boolean filter) {
+        Bitmap scaled = new Bitmap(dstWidth, dstHeight, src.mConfig);
+        for (int y = 0; y < dstHeight; y++)
+            for (int x = 0; x < dstWidth; x++)
+                scaled.mPixels[y * dstWidth + x] = src.mPixels[(y * src.mHeight / dstHeight) * src.mWidth + (x * src.mWidth / dstWidth)];
+        return scaled;
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public Config getConfig() {
+        return mConfig;
+    }
+
+    public int getByteCount() {
+        return mWidth * mHeight * mConfig.bytesPerPixel;
+    }
+
+    public int getAllocationByteCount() {
+        return getByteCount();
+    }
+
+    public void setHasAlpha(boolean hasAlpha) {
+    }
+
+    public void eraseColor(int color) {
+        Arrays.fill(mPixels, color);
+    }
+
+    public int getPixel(int x, int y) {
+        return mPixels[y * mWidth + x];
+    }
+
+    public void setPixel(int x, int y, int color) {
+        mPixels[y * mWidth + x] = color;
+    }
+
+    public void getPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        for (int row = 0; row < height; row++)
+            System.arraycopy(mPixels, (y + row) * mWidth + x, pixels, offset + row * stride, width);
+    }
+
+    public void setPixels(int[] pixels, int offset, int stride, int x, int y, int width, int height) {
+        for (int row = 0; row < height; row++)
+            System.arraycopy(pixels, offset + row * stride, mPixels, (y + row) * mWidth + x, width);
+    }
+
+    public boolean isRecycled() {
+        return mPixels == null;
+    }
+
+    public void recycle() {
+        mPixels = null;
+    }
+}
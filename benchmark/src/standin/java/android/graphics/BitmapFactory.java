@@ -0,0 +1,43 @@
+package android.graphics;
+
+import android.content.res.Resources;
+
+/**
+ * Stand-in for the bitmap decoder, every resource decodes to an opaque image of {@link #RESOURCE_SIZE} pixels square.
+ */
+public class BitmapFactory {
+
+    public static final int RESOURCE_SIZE = 1024;
+
+    public static class Options {
+        public boolean inJustDecodeBounds;
+        public int inSampleSize;
+        public boolean inScaled = true;
+        public boolean inMutable;
+        public boolean inDither;
+        public Bitmap inBitmap;
+        public Bitmap.Config inPreferredConfig = Bitmap.Config.ARGB_8888;
+        public int outWidth;
+        public int outHeight;
+    }
+
+    public static Bitmap decodeResource(Resources res, int id) {
+        return decodeResource(res, id, null);
+    }
+
+    public static Bitmap decodeResource(Resources res, int id, Options opts) {
+        int sampleSize = opts != null && opts.inSampleSize > 1 ? opts.inSampleSize : 1;
+        int size = RESOURCE_SIZE / sampleSize;
+
+        if (opts != null) {
+            opts.outWidth = size;
+            opts.outHeight = size;
+            if (opts.inJustDecodeBounds)
+                return null;
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(size, size, opts != null ? opts.inPreferredConfig : Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(0xFF203040);
+        return bitmap;
+    }
+}
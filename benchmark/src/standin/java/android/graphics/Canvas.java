@@ -0,0 +1,130 @@
+package android.graphics;
+
+/**
+ * Stand-in for an Android canvas. Draw calls don't rasterize anything, they are only counted,
+ * so a benchmark measures the cost of the watch face code itself.
+ */
+public class Canvas {
+
+    private Bitmap mBitmap;
+    private int mSaveCount = 1;
+    private long mDrawCallCount;
+
+    public Canvas() {
+    }
+
+    public Canvas(Bitmap bitmap) {
+        this.mBitmap = bitmap;
+    }
+
+    public void setBitmap(Bitmap bitmap) {
+        this.mBitmap = bitmap;
+    }
+
+    public int getWidth() {
+        return mBitmap != null ? mBitmap.getWidth() : 0;
+    }
+
+    public int getHeight() {
+        return mBitmap != null ? mBitmap.getHeight() : 0;
+    }
+
+    /**
+     * @return the number of draw calls made on this canvas, only present on the stand-in
+     */
+    public long getDrawCallCount() {
+        return mDrawCallCount;
+    }
+
+    public int save() {
+        return mSaveCount++;
+    }
+
+    public void restore() {
+        mSaveCount--;
+    }
+
+    public void restoreToCount(int saveCount) {
+        mSaveCount = saveCount;
+    }
+
+    public void translate(float dx, float dy) {
+    }
+
+    public void rotate(float degrees) {
+    }
+
+    public void rotate(float degrees, float px, float py) {
+    }
+
+    public void concat(Matrix matrix) {
+    }
+
+    public boolean clipRect(Rect rect) {
+        return true;
+    }
+
+    public boolean clipRect(float left, float top, float right, float bottom) {
+        return true;
+    }
+
+    public void drawColor(int color) {
+        mDrawCallCount++;
+    }
+
+    public void drawColor(int color, PorterDuff.Mode mode) {
+        mDrawCallCount++;
+    }
+
+    public void drawArc(RectF oval, float startAngle, float sweepAngle, boolean useCenter, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawLine(float startX, float startY, float stopX, float stopY, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawCircle(float cx, float cy, float radius, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawRect(Rect r, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawRect(RectF r, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawPath(Path path, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawBitmap(Bitmap bitmap, Matrix matrix, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawText(String text, float x, float y, Paint paint) {
+        mDrawCallCount++;
+    }
+
+    public void drawTextOnPath(String text, Path path, float hOffset, float vOffset, Paint paint) {
+        mDrawCallCount++;
+    }
+}
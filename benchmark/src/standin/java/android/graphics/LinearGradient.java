@@ -0,0 +1,16 @@
+package android.graphics;
+
+public class LinearGradient extends Shader {
+
+    private final int[] mColors;
+    private final float[] mPositions;
+
+    public LinearGradient(float x0, float y0, float x1, float y1, int[] colors, float[] positions, TileMode tile) {
+        this.mColors = colors.clone();
+        this.mPositions = positions == null ? null : positions.clone();
+    }
+
+    public LinearGradient(float x0, float y0, float x1, float y1, int color0, int color1, TileMode tile) {
+        this(x0, y0, x1, y1, new int[]{color0, color1}, null, tile);
+    }
+}
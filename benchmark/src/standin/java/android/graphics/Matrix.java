@@ -0,0 +1,103 @@
+package android.graphics;
+
+/**
+ * Stand-in for an Android matrix, a plain 3x3 affine transform.
+ */
+public class Matrix {
+
+    private final float[] mValues = new float[9];
+
+    public Matrix() {
+        reset();
+    }
+
+    public void reset() {
+        mValues[0] = 1;
+        mValues[1] = 0;
+        mValues[2] = 0;
+        mValues[3] = 0;
+        mValues[4] = 1;
+        mValues[5] = 0;
+        mValues[6] = 0;
+        mValues[7] = 0;
+        mValues[8] = 1;
+    }
+
+    public void set(Matrix src) {
+        System.arraycopy(src.mValues, 0, mValues, 0, 9);
+    }
+
+    public void setTranslate(float dx, float dy) {
+        reset();
+        mValues[2] = dx;
+        mValues[5] = dy;
+    }
+
+    public void setRotate(float degrees, float px, float py) {
+        reset();
+        postRotate(degrees, px, py);
+    }
+
+    public void setRotate(float degrees) {
+        setRotate(degrees, 0, 0);
+    }
+
+    public boolean preTranslate(float dx, float dy) {
+        mValues[2] += mValues[0] * dx + mValues[1] * dy;
+        mValues[5] += mValues[3] * dx + mValues[4] * dy;
+        return true;
+    }
+
+    public boolean postTranslate(float dx, float dy) {
+        mValues[2] += dx;
+        mValues[5] += dy;
+        return true;
+    }
+
+    public boolean preRotate(float degrees, float px, float py) {
+        Matrix rotation = new Matrix();
+        rotation.setRotate(degrees, px, py);
+        concat(this, rotation);
+        return true;
+    }
+
+    public boolean postRotate(float degrees, float px, float py) {
+        double radians = Math.toRadians(degrees);
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+
+        postTranslate(-px, -py);
+        float[] v = mValues;
+        float a = v[0], b = v[1], c = v[2], d = v[3], e = v[4], f = v[5];
+        v[0] = cos * a - sin * d;
+        v[1] = cos * b - sin * e;
+        v[2] = cos * c - sin * f;
+        v[3] = sin * a + cos * d;
+        v[4] = sin * b + cos * e;
+        v[5] = sin * c + cos * f;
+        postTranslate(px, py);
+        return true;
+    }
+
+    // this = this * other
+    private static void concat(Matrix self, Matrix other) {
+        float[] a = self.mValues.clone();
+        float[] b = other.mValues;
+        float[] r = self.mValues;
+        for (int row = 0; row < 3; row++)
+            for (int col = 0; col < 3; col++)
+                r[row * 3 + col] = a[row * 3] * b[col] + a[row * 3 + 1] * b[3 + col] + a[row * 3 + 2] * b[6 + col];
+    }
+
+    /**
+     * Applies the transform to the given x, y pairs in place
+     */
+    public void mapPoints(float[] pts) {
+        for (int i = 0; i + 1 < pts.length; i += 2) {
+            float x = pts[i];
+            float y = pts[i + 1];
+            pts[i] = mValues[0] * x + mValues[1] * y + mValues[2];
+            pts[i + 1] = mValues[3] * x + mValues[4] * y + mValues[5];
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package android.graphics;
+
+/**
+ * Stand-in for an Android paint, holds the configuration. Text is measured with a fixed average glyph width.
+ */
+public class Paint {
+
+    public static final int ANTI_ALIAS_FLAG = 1;
+    public static final int FILTER_BITMAP_FLAG = 2;
+    public static final int DITHER_FLAG = 4;
+
+    // the average glyph width, relative to the text size
+    private static final float GLYPH_WIDTH = 0.5f;
+
+    public enum Align {
+        LEFT, CENTER, RIGHT
+    }
+
+    public enum Cap {
+        BUTT, ROUND, SQUARE
+    }
+
+    public enum Style {
+        FILL, STROKE, FILL_AND_STROKE
+    }
+
+    private int mFlags;
+    private int mColor = Color.BLACK;
+    private float mStrokeWidth;
+    private float mTextSize = 12;
+    private float mShadowRadius;
+    private Align mTextAlign = Align.LEFT;
+    private Cap mStrokeCap = Cap.BUTT;
+    private Style mStyle = Style.FILL;
+    private Typeface mTypeface;
+    private Shader mShader;
+    private Xfermode mXfermode;
+
+    public Paint() {
+    }
+
+    public Paint(int flags) {
+        this.mFlags = flags;
+    }
+
+    public Paint(Paint paint) {
+        set(paint);
+    }
+
+    public void set(Paint src) {
+        mFlags = src.mFlags;
+        mColor = src.mColor;
+        mStrokeWidth = src.mStrokeWidth;
+        mTextSize = src.mTextSize;
+        mShadowRadius = src.mShadowRadius;
+        mTextAlign = src.mTextAlign;
+        mStrokeCap = src.mStrokeCap;
+        mStyle = src.mStyle;
+        mTypeface = src.mTypeface;
+        mShader = src.mShader;
+        mXfermode = src.mXfermode;
+    }
+
+    public void reset() {
+        set(new Paint());
+    }
+
+    public void setAntiAlias(boolean aa) {
+        mFlags = aa ? mFlags | ANTI_ALIAS_FLAG : mFlags & ~ANTI_ALIAS_FLAG;
+    }
+
+    public boolean isAntiAlias() {
+        return (mFlags & ANTI_ALIAS_FLAG) != 0;
+    }
+
+    public void setFilterBitmap(boolean filter) {
+        mFlags = filter ? mFlags | FILTER_BITMAP_FLAG : mFlags & ~FILTER_BITMAP_FLAG;
+    }
+
+    public void setDither(boolean dither) {
+        mFlags = dither ? mFlags | DITHER_FLAG : mFlags & ~DITHER_FLAG;
+    }
+
+    public void setColor(int color) {
+        mColor = color;
+    }
+
+    public int getColor() {
+        return mColor;
+    }
+
+    public void setARGB(int a, int r, int g, int b) {
+        mColor = Color.argb(a, r, g, b);
+    }
+
+    public void setAlpha(int a) {
+        mColor = (mColor & 0x00FFFFFF) | (a << 24);
+    }
+
+    public int getAlpha() {
+        return Color.alpha(mColor);
+    }
+
+    public void setStrokeWidth(float width) {
+        mStrokeWidth = width;
+    }
+
+    public float getStrokeWidth() {
+        return mStrokeWidth;
+    }
+
+    public void setStrokeCap(Cap cap) {
+        mStrokeCap = cap;
+    }
+
+    public void setStyle(Style style) {
+        mStyle = style;
+    }
+
+    public Style getStyle() {
+        return mStyle;
+    }
+
+    public void setShadowLayer(float radius, float dx, float dy, int shadowColor) {
+        mShadowRadius = radius;
+    }
+
+    public void clearShadowLayer() {
+        mShadowRadius = 0;
+    }
+
+    public boolean hasShadowLayer() {
+        return mShadowRadius > 0;
+    }
+
+    public void setTextSize(float textSize) {
+        mTextSize = textSize;
+    }
+
+    public float getTextSize() {
+        return mTextSize;
+    }
+
+    public void setTextAlign(Align align) {
+        mTextAlign = align;
+    }
+
+    public Align getTextAlign() {
+        return mTextAlign;
+    }
+
+    public Typeface setTypeface(Typeface typeface) {
+        mTypeface = typeface;
+        return typeface;
+    }
+
+    public Typeface getTypeface() {
+        return mTypeface;
+    }
+
+    public Shader setShader(Shader shader) {
+        mShader = shader;
+        return shader;
+    }
+
+    public Shader getShader() {
+        return mShader;
+    }
+
+    public Xfermode setXfermode(Xfermode xfermode) {
+        mXfermode = xfermode;
+        return xfermode;
+    }
+
+    public float measureText(String text) {
+        return text.length() * mTextSize * GLYPH_WIDTH;
+    }
+
+    public float ascent() {
+        return -0.9f * mTextSize;
+    }
+
+    public float descent() {
+        return 0.25f * mTextSize;
+    }
+}
@@ -0,0 +1,69 @@
+package android.graphics;
+
+/**
+ * Stand-in for an Android path, records its points into a growing array.
+ */
+public class Path {
+
+    private float[] mPoints = new float[8];
+    private int mPointCount;
+
+    public void reset() {
+        mPointCount = 0;
+    }
+
+    public void rewind() {
+        mPointCount = 0;
+    }
+
+    public boolean isEmpty() {
+        return mPointCount == 0;
+    }
+
+    public void set(Path src) {
+        mPoints = src.mPoints.clone();
+        mPointCount = src.mPointCount;
+    }
+
+    public void moveTo(float x, float y) {
+        add(x, y);
+    }
+
+    public void lineTo(float x, float y) {
+        add(x, y);
+    }
+
+    public void addArc(RectF oval, float startAngle, float sweepAngle) {
+        add(oval.left, oval.top);
+        add(oval.right, oval.bottom);
+    }
+
+    public void arcTo(RectF oval, float startAngle, float sweepAngle) {
+        addArc(oval, startAngle, sweepAngle);
+    }
+
+    public void arcTo(RectF oval, float startAngle, float sweepAngle, boolean forceMoveTo) {
+        addArc(oval, startAngle, sweepAngle);
+    }
+
+    public void close() {
+    }
+
+    public void offset(float dx, float dy) {
+        for (int i = 0; i < mPointCount * 2; i += 2) {
+            mPoints[i] += dx;
+            mPoints[i + 1] += dy;
+        }
+    }
+
+    private void add(float x, float y) {
+        if (mPointCount * 2 + 2 > mPoints.length) {
+            float[] grown = new float[mPoints.length * 2];
+            System.arraycopy(mPoints, 0, grown, 0, mPoints.length);
+            mPoints = grown;
+        }
+        mPoints[mPointCount * 2] = x;
+        mPoints[mPointCount * 2 + 1] = y;
+        mPointCount++;
+    }
+}
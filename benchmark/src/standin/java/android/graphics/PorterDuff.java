@@ -0,0 +1,8 @@
+package android.graphics;
+
+public class PorterDuff {
+
+    public enum Mode {
+        CLEAR, SRC, DST, SRC_OVER, DST_OVER, SRC_IN, DST_IN, SRC_OUT, DST_OUT
+    }
+}
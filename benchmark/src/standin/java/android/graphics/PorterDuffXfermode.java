@@ -0,0 +1,7 @@
+package android.graphics;
+
+public class PorterDuffXfermode extends Xfermode {
+
+    public PorterDuffXfermode(PorterDuff.Mode mode) {
+    }
+}
@@ -0,0 +1,19 @@
+package android.graphics;
+
+public class Shader {
+
+    public enum TileMode {
+        CLAMP, REPEAT, MIRROR
+    }
+
+    private final Matrix mLocalMatrix = new Matrix();
+
+    public void setLocalMatrix(Matrix localMatrix) {
+        mLocalMatrix.set(localMatrix);
+    }
+
+    public boolean getLocalMatrix(Matrix localMatrix) {
+        localMatrix.set(mLocalMatrix);
+        return true;
+    }
+}
@@ -0,0 +1,12 @@
+package android.graphics;
+
+public class SweepGradient extends Shader {
+
+    private final int[] mColors;
+    private final float[] mPositions;
+
+    public SweepGradient(float cx, float cy, int[] colors, float[] positions) {
+        this.mColors = colors.clone();
+        this.mPositions = positions == null ? null : positions.clone();
+    }
+}
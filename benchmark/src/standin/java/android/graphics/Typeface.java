@@ -0,0 +1,30 @@
+package android.graphics;
+
+public class Typeface {
+
+    public static final int NORMAL = 0;
+    public static final int BOLD = 1;
+    public static final int ITALIC = 2;
+
+    public static final Typeface DEFAULT = new Typeface(null, NORMAL);
+
+    private final String mFamily;
+    private final int mStyle;
+
+    private Typeface(String family, int style) {
+        this.mFamily = family;
+        this.mStyle = style;
+    }
+
+    public static Typeface create(String familyName, int style) {
+        return new Typeface(familyName, style);
+    }
+
+    public static Typeface create(Typeface family, int style) {
+        return new Typeface(family == null ? null : family.mFamily, style);
+    }
+
+    public int getStyle() {
+        return mStyle;
+    }
+}
@@ -0,0 +1,44 @@
+package android.net;
+
+/**
+ * Stand-in for an Android uri, a plain string.
+ */
+public final class Uri {
+
+    private final String mUri;
+
+    private Uri(String uri) {
+        this.mUri = uri;
+    }
+
+    public static Uri parse(String uri) {
+        return new Uri(uri);
+    }
+
+    public Builder buildUpon() {
+        return new Builder(mUri);
+    }
+
+    @Override
+    public String toString() {
+        return mUri;
+    }
+
+    public static final class Builder {
+
+        private final StringBuilder mUri;
+
+        private Builder(String uri) {
+            this.mUri = new StringBuilder(uri);
+        }
+
+        public Builder appendPath(String segment) {
+            mUri.append('/').append(segment);
+            return this;
+        }
+
+        public Uri build() {
+            return new Uri(mUri.toString());
+        }
+    }
+}
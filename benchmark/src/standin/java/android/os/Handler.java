@@ -0,0 +1,46 @@
+package android.os;
+
+/**
+ * Stand-in for an Android handler. Posted runnables run synchronously on the calling thread,
+ * delayed runnables never run, only their looper keeps them, so a benchmark never depends on a message loop.
+ */
+public class Handler {
+
+    private final Looper mLooper;
+
+    public Handler() {
+        this(Looper.getMainLooper());
+    }
+
+    public Handler(Looper looper) {
+        this.mLooper = looper;
+    }
+
+    public final boolean post(Runnable r) {
+        r.run();
+        return true;
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        mLooper.addDelayed(this, r, delayMillis);
+        return true;
+    }
+
+    public final boolean postAtTime(Runnable r, long uptimeMillis) {
+        mLooper.addDelayed(this, r, uptimeMillis - SystemClock.uptimeMillis());
+        return true;
+    }
+
+    public final void removeCallbacks(Runnable r) {
+        mLooper.removeDelayed(this, r);
+    }
+
+    public final void removeCallbacksAndMessages(Object token) {
+        if (token == null)
+            mLooper.removeDelayed(this, null);
+    }
+
+    public final Looper getLooper() {
+        return mLooper;
+    }
+}
@@ -0,0 +1,31 @@
+package android.os;
+
+/**
+ * Stand-in for a handler thread, its looper is the synchronous main looper.
+ */
+public class HandlerThread extends Thread {
+
+    public HandlerThread(String name) {
+        super(name);
+    }
+
+    public HandlerThread(String name, int priority) {
+        super(name);
+    }
+
+    @Override
+    public synchronized void start() {
+    }
+
+    public Looper getLooper() {
+        return Looper.getMainLooper();
+    }
+
+    public boolean quit() {
+        return true;
+    }
+
+    public boolean quitSafely() {
+        return true;
+    }
+}
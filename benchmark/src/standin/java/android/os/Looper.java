@@ -0,0 +1,65 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Stand-in for a looper. There is no message loop, the looper only keeps the runnables posted with a delay,
+ * which never run, so a test can see what got scheduled.
+ */
+public final class Looper {
+
+    private static final Looper sMainLooper = new Looper();
+
+    private static final class Delayed {
+        final Handler handler;
+        final Runnable runnable;
+        final long delayMillis;
+
+        Delayed(Handler handler, Runnable runnable, long delayMillis) {
+            this.handler = handler;
+            this.runnable = runnable;
+            this.delayMillis = delayMillis;
+        }
+    }
+
+    private final List<Delayed> mDelayed = new ArrayList<>();
+
+    public static Looper getMainLooper() {
+        return sMainLooper;
+    }
+
+    public static Looper myLooper() {
+        return sMainLooper;
+    }
+
+    public void quit() {
+    }
+
+    public void quitSafely() {
+    }
+
+    /**
+     * @return the delays of the runnables posted with a delay and not removed since, in the order they were posted
+     */
+    public synchronized List<Long> getPendingDelays() {
+        List<Long> delays = new ArrayList<>();
+        for (Delayed delayed : mDelayed)
+            delays.add(delayed.delayMillis);
+        return delays;
+    }
+
+    synchronized void addDelayed(Handler handler, Runnable runnable, long delayMillis) {
+        mDelayed.add(new Delayed(handler, runnable, delayMillis));
+    }
+
+    // a null runnable removes all of the handler's
+    synchronized void removeDelayed(Handler handler, Runnable runnable) {
+        for (Iterator<Delayed> it = mDelayed.iterator(); it.hasNext(); ) {
+            Delayed delayed = it.next();
+            if (delayed.handler == handler && (runnable == null || delayed.runnable == runnable))
+                it.remove();
+        }
+    }
+}
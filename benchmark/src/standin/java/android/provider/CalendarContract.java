@@ -0,0 +1,43 @@
+package android.provider;
+
+public final class CalendarContract {
+
+    public static final class Calendars {
+        public static final String _ID = "_id";
+        public static final String ACCOUNT_NAME = "account_name";
+        public static final String CALENDAR_DISPLAY_NAME = "calendar_displayName";
+        public static final String OWNER_ACCOUNT = "ownerAccount";
+    }
+
+    public static final class Events {
+        public static final String _ID = "_id";
+        public static final String TITLE = "title";
+        public static final String DISPLAY_COLOR = "displayColor";
+        public static final String DTSTART = "dtstart";
+        public static final String DTEND = "dtend";
+        public static final String DURATION = "duration";
+        public static final String EVENT_LOCATION = "eventLocation";
+        public static final String ALL_DAY = "allDay";
+        public static final String CALENDAR_ID = "calendar_id";
+        public static final String SELF_ATTENDEE_STATUS = "selfAttendeeStatus";
+    }
+
+    public static final class Instances {
+        public static final String _ID = "_id";
+        public static final String EVENT_ID = "event_id";
+        public static final String BEGIN = "begin";
+        public static final String END = "end";
+        public static final String TITLE = "title";
+        public static final String DISPLAY_COLOR = "displayColor";
+        public static final String EVENT_LOCATION = "eventLocation";
+        public static final String ALL_DAY = "allDay";
+        public static final String CALENDAR_ID = "calendar_id";
+        public static final String SELF_ATTENDEE_STATUS = "selfAttendeeStatus";
+    }
+
+    public static final class Attendees {
+        public static final int ATTENDEE_STATUS_NONE = 0;
+        public static final int ATTENDEE_STATUS_ACCEPTED = 1;
+        public static final int ATTENDEE_STATUS_DECLINED = 2;
+    }
+}
@@ -0,0 +1,12 @@
+package android.support.wearable.provider;
+
+import android.net.Uri;
+
+public class WearableCalendarContract {
+
+    public static final Uri CONTENT_URI = Uri.parse("content://com.google.android.wearable.provider.calendar");
+
+    public static final class Instances {
+        public static final Uri CONTENT_URI = Uri.parse("content://com.google.android.wearable.provider.calendar/instances/when");
+    }
+}
@@ -0,0 +1,9 @@
+package android.util;
+
+public class DisplayMetrics {
+
+    public float density = 1;
+    public float scaledDensity = 1;
+    public int widthPixels;
+    public int heightPixels;
+}
@@ -0,0 +1,37 @@
+package android.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class LongSparseArray<E> {
+
+    private final Map<Long, E> mValues;
+
+    public LongSparseArray() {
+        this(10);
+    }
+
+    public LongSparseArray(int initialCapacity) {
+        mValues = new HashMap<>(initialCapacity);
+    }
+
+    public E get(long key) {
+        return mValues.get(key);
+    }
+
+    public void put(long key, E value) {
+        mValues.put(key, value);
+    }
+
+    public void remove(long key) {
+        mValues.remove(key);
+    }
+
+    public int size() {
+        return mValues.size();
+    }
+
+    public void clear() {
+        mValues.clear();
+    }
+}
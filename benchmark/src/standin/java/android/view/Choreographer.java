@@ -0,0 +1,26 @@
+package android.view;
+
+/**
+ * Stand-in for the vsync choreographer. There is no display, so frame callbacks are never called.
+ */
+public final class Choreographer {
+
+    private static final Choreographer INSTANCE = new Choreographer();
+
+    public interface FrameCallback {
+        void doFrame(long frameTimeNanos);
+    }
+
+    public static Choreographer getInstance() {
+        return INSTANCE;
+    }
+
+    public void postFrameCallback(FrameCallback callback) {
+    }
+
+    public void postFrameCallbackDelayed(FrameCallback callback, long delayMillis) {
+    }
+
+    public void removeFrameCallback(FrameCallback callback) {
+    }
+}
@@ -0,0 +1,11 @@
+package pie.watchface;
+
+/**
+ * Stand-in for the generated resource ids of the wear module.
+ */
+public final class R {
+
+    public static final class drawable {
+        public static final int bg = 0x7f020000;
+    }
+}
@@ -0,0 +1,205 @@
+package pie.watchface;
+
+import android.os.Looper;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import pie.watchface.benchmark.BenchmarkEnvironment;
+import pie.watchface.benchmark.SyntheticCalendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The loader against a source that can be made to fail. The stand-in handlers run posted refreshes right away,
+ * so every request below has finished once it returns.
+ */
+public class CalendarEventLoaderTest {
+
+    private static final long START_MILLIS = TimeUnit.DAYS.toMillis(20000);
+
+    private final long[] mNow = {START_MILLIS};
+    private SyntheticCalendar mCalendar;
+    private boolean mFailing;
+    private final List<Long> mQueryBegins = new ArrayList<>();
+    private CalendarEventLoader mLoader;
+
+    @Before
+    public void setUp() {
+        mCalendar = new SyntheticCalendar(40, 42, START_MILLIS, TimeUnit.DAYS.toMillis(2));
+        mLoader = new CalendarEventLoader(new BenchmarkEnvironment(mCalendar).context, new CalendarEventLoader.EventSource() {
+            @Override
+            public EventStore query(long beginMillis, long endMillis) {
+                mQueryBegins.add(beginMillis);
+                if (mFailing)
+                    throw new SecurityException("no calendar permission");
+                return mCalendar.events(beginMillis, endMillis);
+            }
+        }, new CalendarEventLoader.Listener() {
+            @Override
+            public void onSnapshotPublished(EventSnapshot snapshot) {
+            }
+        });
+        mLoader.setClock(new CalendarEventLoader.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return mNow[0];
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        mLoader.quit();
+    }
+
+    @Test
+    public void failedFullQueryIsRepeatedInFull() {
+        mFailing = true;
+        mLoader.requestLoad();
+        assertEquals(1, mQueryBegins.size());
+        assertEquals(0, mLoader.getSnapshot().version);
+
+        mFailing = false;
+        mNow[0] += TimeUnit.MINUTES.toMillis(10);
+        mLoader.refreshIfNeeded();
+
+        // queried from now again, not as the tail of a span that never got fetched
+        assertEquals(2, mQueryBegins.size());
+        assertEquals(mNow[0], (long) mQueryBegins.get(1));
+        assertTrue(mLoader.getSnapshot().events.size() > 0);
+    }
+
+    @Test
+    public void failedFullQueryWaitsLongerEveryTime() {
+        mFailing = true;
+        mLoader.requestLoad();
+        long firstDelay = wakeUpDelay();
+        assertTrue(firstDelay > 0);
+
+        // the time ticks before the retry don't query the failing source
+        for (int i = 0; i < 10; i++)
+            mLoader.refreshIfNeeded();
+        assertEquals(1, mQueryBegins.size());
+
+        mNow[0] += firstDelay;
+        mLoader.refreshIfNeeded();
+        assertEquals(2, mQueryBegins.size());
+        assertTrue(wakeUpDelay() > firstDelay);
+    }
+
+    @Test
+    public void failedRangeQueryIsRetriedLater() {
+        mLoader.requestLoad();
+        assertEquals(1, mQueryBegins.size());
+
+        // the window reaches the end of the prefetched span, extending it fails
+        mFailing = true;
+        mNow[0] += CalendarEventLoader.PREFETCH_LENGTH_MILLIS - CalendarEventLoader.WINDOW_LENGTH_MILLIS;
+        mLoader.refreshIfNeeded();
+        assertEquals(2, mQueryBegins.size());
+        assertTrue(wakeUpDelay() > 0);
+
+        for (int i = 0; i < 10; i++)
+            mLoader.refreshIfNeeded();
+        assertEquals(2, mQueryBegins.size());
+
+        mFailing = false;
+        mNow[0] += wakeUpDelay();
+        mLoader.refreshIfNeeded();
+        assertEquals(3, mQueryBegins.size());
+    }
+
+    @Test
+    public void defaultSourceKeepsLoadingAfterMidnight() {
+        CalendarEventLoader loader = new CalendarEventLoader(new BenchmarkEnvironment(mCalendar).context, null, new CalendarEventLoader.Listener() {
+            @Override
+            public void onSnapshotPublished(EventSnapshot snapshot) {
+            }
+        });
+        loader.setClock(new CalendarEventLoader.Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return mNow[0];
+            }
+        });
+
+        Calendar noon = new GregorianCalendar();
+        noon.setTimeInMillis(START_MILLIS);
+        noon.set(Calendar.HOUR_OF_DAY, 12);
+        noon.set(Calendar.MINUTE, 0);
+        mNow[0] = noon.getTimeInMillis();
+        try {
+            loader.requestLoad();
+
+            // ticking through three days, every noon the demo lunch of that day is coming up
+            for (int day = 0; day < 3; day++) {
+                assertTrue(hasTitle(loader, "Lunch at this restaurant"));
+                noon.add(Calendar.DAY_OF_MONTH, 1);
+                while (mNow[0] < noon.getTimeInMillis()) {
+                    mNow[0] = Math.min(mNow[0] + TimeUnit.MINUTES.toMillis(15), noon.getTimeInMillis());
+                    loader.refreshIfNeeded();
+                }
+            }
+        } finally {
+            loader.quit();
+        }
+    }
+
+    @Test
+    public void changedFilterHidesSyncedEvents() {
+        InProcessSyncTransport[] ends = InProcessSyncTransport.pair();
+        mLoader.setSyncedSource(new SyncedEventSource(ends[1]));
+
+        long hour = TimeUnit.HOURS.toMillis(1);
+        EventBatch window = new EventBatch.Builder(2)
+                .add(1, "Dentist", START_MILLIS + hour, START_MILLIS + 2 * hour, null, false, 0xff00ff00, 3, false)
+                .add(2, "Lunch", START_MILLIS + 3 * hour, START_MILLIS + 4 * hour, null, false, 0xff0000ff, 3, true)
+                .buildWindow(START_MILLIS + TimeUnit.DAYS.toMillis(2));
+        new EventSyncSender().push(window, ends[0]);
+        assertTrue(hasEvent(1));
+        assertTrue(hasEvent(2));
+
+        mLoader.setEventFilter(new EventFilter.Builder().excludeTitleContaining("dentist").build());
+        assertFalse(hasEvent(1));
+        assertTrue(hasEvent(2));
+
+        mLoader.setEventFilter(new EventFilter.Builder().hideDeclined(true).build());
+        assertTrue(hasEvent(1));
+        assertFalse(hasEvent(2));
+    }
+
+    private boolean hasTitle(CalendarEventLoader loader, String title) {
+        EventStore events = loader.getSnapshot().events;
+        for (int i = 0; i < events.size(); i++) {
+            if (title.equals(events.getTitle(i)) && events.getStartMillis(i) > mNow[0])
+                return true;
+        }
+        return false;
+    }
+
+    private boolean hasEvent(long id) {
+        EventStore events = mLoader.getSnapshot().events;
+        for (int i = 0; i < events.size(); i++) {
+            if (events.getId(i) == id)
+                return true;
+        }
+        return false;
+    }
+
+    // the delay of the loader's single wakeup, the only delayed runnable while it's the only loader
+    private static long wakeUpDelay() {
+        List<Long> delays = Looper.getMainLooper().getPendingDelays();
+        assertEquals(1, delays.size());
+        return delays.get(0);
+    }
+}
@@ -0,0 +1,179 @@
+package pie.watchface;
+
+import android.content.SharedPreferences;
+import android.provider.CalendarContract;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs the selection the filter builds against a real SQLite table shaped like the provider's instances,
+ * with the arguments bound as text, the way the content resolver binds them.
+ */
+public class EventFilterTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private Connection mDb;
+
+    @Before
+    public void setUp() throws SQLException {
+        mDb = DriverManager.getConnection("jdbc:sqlite::memory:");
+        try (Statement statement = mDb.createStatement()) {
+            statement.execute("CREATE TABLE instances ("
+                    + CalendarContract.Instances._ID + " INTEGER PRIMARY KEY, "
+                    + CalendarContract.Instances.TITLE + " TEXT, "
+                    + CalendarContract.Instances.BEGIN + " INTEGER, "
+                    + CalendarContract.Instances.END + " INTEGER, "
+                    + CalendarContract.Instances.EVENT_LOCATION + " TEXT, "
+                    + CalendarContract.Instances.ALL_DAY + " INTEGER, "
+                    + CalendarContract.Instances.DISPLAY_COLOR + " INTEGER, "
+                    + CalendarContract.Instances.CALENDAR_ID + " INTEGER, "
+                    + CalendarContract.Instances.SELF_ATTENDEE_STATUS + " INTEGER)");
+        }
+
+        insert(1, "Standup", 0, HOUR / 4, 0, 1, CalendarContract.Attendees.ATTENDEE_STATUS_ACCEPTED);
+        insert(2, "Planning", HOUR, 3 * HOUR, 0, 1, CalendarContract.Attendees.ATTENDEE_STATUS_ACCEPTED);
+        insert(3, "Holiday", 0, 24 * HOUR, 1, 2, CalendarContract.Attendees.ATTENDEE_STATUS_NONE);
+        insert(4, "Review 100%", 4 * HOUR, 5 * HOUR, 0, 2, CalendarContract.Attendees.ATTENDEE_STATUS_DECLINED);
+        insert(5, null, 6 * HOUR, 7 * HOUR, 0, 1, CalendarContract.Attendees.ATTENDEE_STATUS_NONE);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        mDb.close();
+    }
+
+    @Test
+    public void noRulesSelectsEverything() throws SQLException {
+        assertEquals(ids(1, 2, 3, 4, 5), select(EventFilter.NONE));
+    }
+
+    @Test
+    public void minDurationHidesShorterEvents() throws SQLException {
+        EventFilter filter = new EventFilter.Builder().minDuration(HOUR).build();
+        assertEquals(ids(2, 3, 4, 5), select(filter));
+    }
+
+    @Test
+    public void excludedTitleIgnoresCaseEscapesWildcardsAndKeepsUntitled() throws SQLException {
+        assertEquals(ids(1, 2, 3, 5), select(new EventFilter.Builder().excludeTitleContaining("100%").build()));
+        assertEquals(ids(1, 3, 4, 5), select(new EventFilter.Builder().excludeTitleContaining("PLAN").build()));
+        assertEquals(ids(1, 2, 3, 4, 5), select(new EventFilter.Builder().excludeTitleContaining("_").build()));
+    }
+
+    @Test
+    public void calendarsAllDayAndDeclined() throws SQLException {
+        assertEquals(ids(3, 4), select(new EventFilter.Builder().onlyCalendar(2).build()));
+        assertEquals(ids(1, 2, 4, 5), select(new EventFilter.Builder().hideAllDay(true).build()));
+        assertEquals(ids(1, 2, 3, 5), select(new EventFilter.Builder().hideDeclined(true).build()));
+    }
+
+    @Test
+    public void rulesCombine() throws SQLException {
+        EventFilter filter = new EventFilter.Builder()
+                .onlyCalendar(1)
+                .minDuration(30 * TimeUnit.MINUTES.toMillis(1))
+                .excludeTitleContaining("planning")
+                .build();
+        assertEquals(ids(5), select(filter));
+    }
+
+    @Test
+    public void defaultPreferencesHideTheDefaultTitles() {
+        EventFilter filter = EventFilter.fromPreferences(new EmptyPreferences());
+        assertEquals(1, filter.getSelectionArgs().length);
+        assertEquals("%BOL%", filter.getSelectionArgs()[0]);
+    }
+
+    private void insert(long id, String title, long begin, long end, int allDay, long calendarId, int attendeeStatus)
+            throws SQLException {
+        try (PreparedStatement statement = mDb.prepareStatement("INSERT INTO instances VALUES (?, ?, ?, ?, NULL, ?, 0, ?, ?)")) {
+            statement.setLong(1, id);
+            statement.setString(2, title);
+            statement.setLong(3, begin);
+            statement.setLong(4, end);
+            statement.setInt(5, allDay);
+            statement.setLong(6, calendarId);
+            statement.setInt(7, attendeeStatus);
+            statement.executeUpdate();
+        }
+    }
+
+    private List<Long> select(EventFilter filter) throws SQLException {
+        String sql = "SELECT " + CalendarContract.Instances._ID + " FROM instances"
+                + (filter.getSelection() != null ? " WHERE " + filter.getSelection() : "")
+                + " ORDER BY " + CalendarContract.Instances._ID;
+
+        List<Long> ids = new ArrayList<>();
+        try (PreparedStatement statement = mDb.prepareStatement(sql)) {
+            String[] args = filter.getSelectionArgs();
+            for (int i = 0; args != null && i < args.length; i++)
+                statement.setString(i + 1, args[i]);
+
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next())
+                    ids.add(rows.getLong(1));
+            }
+        }
+        return ids;
+    }
+
+    private static List<Long> ids(long... ids) {
+        List<Long> list = new ArrayList<>();
+        for (long id : ids)
+            list.add(id);
+        return list;
+    }
+
+    private static class EmptyPreferences implements SharedPreferences {
+
+        @Override
+        public String getString(String key, String defValue) {
+            return defValue;
+        }
+
+        @Override
+        public Set<String> getStringSet(String key, Set<String> defValues) {
+            return defValues != null ? defValues : Collections.<String>emptySet();
+        }
+
+        @Override
+        public int getInt(String key, int defValue) {
+            return defValue;
+        }
+
+        @Override
+        public long getLong(String key, long defValue) {
+            return defValue;
+        }
+
+        @Override
+        public boolean getBoolean(String key, boolean defValue) {
+            return defValue;
+        }
+
+        @Override
+        public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+
+        @Override
+        public void unregisterOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package pie.watchface;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Pushes the changes to the watch whenever the calendar provider signals a change
+ */
+public class CalendarChangedReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        EventSyncService.push(context);
+    }
+}
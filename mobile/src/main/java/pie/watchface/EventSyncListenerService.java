@@ -0,0 +1,16 @@
+package pie.watchface;
+
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.WearableListenerService;
+
+/**
+ * Receives the watch's requests for the events, even while the app isn't running
+ */
+public class EventSyncListenerService extends WearableListenerService {
+
+    @Override
+    public void onMessageReceived(MessageEvent messageEvent) {
+        if (SyncTransport.PATH_REQUEST.equals(messageEvent.getPath()))
+            EventSyncService.answer(this, EventBatch.decodeRequest(messageEvent.getData()));
+    }
+}
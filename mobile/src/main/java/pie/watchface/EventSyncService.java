@@ -0,0 +1,79 @@
+package pie.watchface;
+
+import android.app.IntentService;
+import android.content.Context;
+import android.content.Intent;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+/**
+ * Sends the upcoming events to the watch, when the watch asks for them and whenever the phone's
+ * calendar changes. The sender lives as long as the process, so while it does, only the changes
+ * since the last batch go out.
+ */
+public class EventSyncService extends IntentService {
+
+    public static final String TAG = EventSyncService.class.getSimpleName();
+
+    // the watch prefetches a day, so it can slide along for another day before it has to ask again
+    public static final long SYNC_WINDOW_MILLIS = 2 * DateUtils.DAY_IN_MILLIS;
+
+    // the sequence of the last batch the watch applied, when it asked
+    private static final String EXTRA_RECEIVER_SEQUENCE = "receiver_sequence";
+    private static final int SEQUENCE_UNKNOWN = -1;
+
+    private static final EventSyncSender sSender = new EventSyncSender();
+
+    private SyncTransport mTransport;
+
+    public EventSyncService() {
+        super(TAG);
+    }
+
+    /**
+     * Pushes the changes of the calendar to the watch
+     */
+    public static void push(Context context) {
+        context.startService(new Intent(context, EventSyncService.class));
+    }
+
+    /**
+     * Answers a request of the watch
+     */
+    public static void answer(Context context, int receiverSequence) {
+        context.startService(new Intent(context, EventSyncService.class).putExtra(EXTRA_RECEIVER_SEQUENCE, receiverSequence));
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mTransport = new WearableSyncTransport(this);
+    }
+
+    @Override
+    public void onDestroy() {
+        mTransport.close();
+        super.onDestroy();
+    }
+
+    @Override
+    protected void onHandleIntent(Intent intent) {
+        long now = System.currentTimeMillis();
+
+        // unfiltered, the watch applies its own filter
+        EventBatch window;
+        try {
+            window = PhoneCalendar.queryWindow(this, now, now + SYNC_WINDOW_MILLIS);
+        } catch (RuntimeException e) {
+            // e.g. a SecurityException when the calendar permission is missing
+            Log.w(TAG, "reading the calendar failed", e);
+            return;
+        }
+
+        int receiverSequence = intent.getIntExtra(EXTRA_RECEIVER_SEQUENCE, SEQUENCE_UNKNOWN);
+        int bytes = receiverSequence == SEQUENCE_UNKNOWN
+                ? sSender.push(window, mTransport)
+                : sSender.sync(window, receiverSequence, mTransport);
+        Log.d(TAG, "synced " + window.size() + " events in " + bytes + " bytes");
+    }
+}
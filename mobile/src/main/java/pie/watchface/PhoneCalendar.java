@@ -0,0 +1,72 @@
+package pie.watchface;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.CalendarContract;
+import android.support.annotation.NonNull;
+
+/**
+ * Reads the phone's calendar into the window that gets synced to the watch. The phone sees every calendar,
+ * not only the subset the wearable provider mirrors. The events go out unfiltered, with the columns the
+ * watch's {@link EventFilter} needs, so the filter set on the watch applies to them as well.
+ */
+public class PhoneCalendar {
+
+    // the columns the watch renders and filters the events by
+    private static final String[] PROJECTION = new String[]{
+            CalendarContract.Instances._ID,
+            CalendarContract.Instances.TITLE,
+            CalendarContract.Instances.BEGIN,
+            CalendarContract.Instances.END,
+            CalendarContract.Instances.ALL_DAY,
+            CalendarContract.Instances.DISPLAY_COLOR,
+            CalendarContract.Instances.CALENDAR_ID,
+            CalendarContract.Instances.SELF_ATTENDEE_STATUS,
+    };
+    private static final int COLUMN_ID = 0;
+    private static final int COLUMN_TITLE = 1;
+    private static final int COLUMN_BEGIN = 2;
+    private static final int COLUMN_END = 3;
+    private static final int COLUMN_ALL_DAY = 4;
+    private static final int COLUMN_DISPLAY_COLOR = 5;
+    private static final int COLUMN_CALENDAR_ID = 6;
+    private static final int COLUMN_SELF_ATTENDEE_STATUS = 7;
+
+    /**
+     * Queries the event instances overlapping the window, blocking, not on the main thread
+     */
+    @NonNull
+    public static EventBatch queryWindow(Context context, long beginMillis, long endMillis) {
+        EventBatch.Builder events = new EventBatch.Builder(32);
+
+        Uri.Builder builder = CalendarContract.Instances.CONTENT_URI.buildUpon();
+        ContentUris.appendId(builder, beginMillis);
+        ContentUris.appendId(builder, endMillis);
+        Uri uri = builder.build();
+
+        ContentResolver cr = context.getContentResolver();
+        Cursor cur = cr.query(uri, PROJECTION, null, null, EventFilter.SORT_ORDER);
+        if (cur == null) return events.buildWindow(endMillis);
+
+        while (cur.moveToNext()) {
+            // the display color is the event's own color, or its calendar's
+            events.add(
+                    cur.getLong(COLUMN_ID),
+                    cur.getString(COLUMN_TITLE),
+                    cur.getLong(COLUMN_BEGIN),
+                    cur.getLong(COLUMN_END),
+                    null /* location, the watch doesn't show it */,
+                    cur.getInt(COLUMN_ALL_DAY) != 0,
+                    cur.getInt(COLUMN_DISPLAY_COLOR),
+                    cur.getLong(COLUMN_CALENDAR_ID),
+                    cur.getInt(COLUMN_SELF_ATTENDEE_STATUS) == CalendarContract.Attendees.ATTENDEE_STATUS_DECLINED
+            );
+        }
+        cur.close();
+
+        return events.buildWindow(endMillis);
+    }
+}
@@ -0,0 +1,480 @@
+package pie.watchface;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A batch of events as the phone sends it to the watch: either the full window, or a delta with the
+ * events added or changed since an earlier batch and the ids of the ones removed.
+ * <p>
+ * The wire format is built to stay small over Bluetooth. Times are whole minutes. Each event is stored
+ * as the difference to the previous event's start, in start order, so it usually takes one or two bytes.
+ * Ids are stored as the difference to the previous id. Titles, locations and colors repeat a lot, so
+ * each distinct one is stored once in a table, and events refer to it by index. All numbers are varints.
+ * <p>
+ * The phone sends its events unfiltered, with the calendar and whether the user declined them, so the watch
+ * applies its own {@link EventFilter} and a changed filter takes effect without asking the phone again.
+ */
+public final class EventBatch {
+
+    public static final int TYPE_FULL = 0;
+    public static final int TYPE_DELTA = 1;
+
+    private static final int FORMAT_VERSION = 2;
+    private static final int FLAG_ALL_DAY = 1;
+    private static final int FLAG_DECLINED = 1 << 1;
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public final int type;
+
+    // a delta only applies on top of the batch with its base sequence, 0 is never used
+    public final int sequence;
+    public final int baseSequence;
+
+    // the end of the span the events were taken from
+    public final long windowEndMillis;
+
+    // the added or changed events, or the whole window for a full batch
+    private final int mSize;
+    private final long[] mIds;
+    private final String[] mTitles;
+    private final String[] mLocations;
+    private final long[] mStartMillis;
+    private final long[] mEndMillis;
+    private final boolean[] mAllDay;
+    private final int[] mColors;
+    private final long[] mCalendarIds;
+    private final boolean[] mDeclined;
+
+    private final long[] mRemovedIds;
+
+    private EventBatch(int type, int sequence, int baseSequence, long windowEndMillis, int size, long[] ids, String[] titles,
+                       String[] locations, long[] startMillis, long[] endMillis, boolean[] allDay, int[] colors,
+                       long[] calendarIds, boolean[] declined, long[] removedIds) {
+        this.type = type;
+        this.sequence = sequence;
+        this.baseSequence = baseSequence;
+        this.windowEndMillis = windowEndMillis;
+        this.mSize = size;
+        this.mIds = ids;
+        this.mTitles = titles;
+        this.mLocations = locations;
+        this.mStartMillis = startMillis;
+        this.mEndMillis = endMillis;
+        this.mAllDay = allDay;
+        this.mColors = colors;
+        this.mCalendarIds = calendarIds;
+        this.mDeclined = declined;
+        this.mRemovedIds = removedIds;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getId(int index) {
+        return mIds[index];
+    }
+
+    public String getTitle(int index) {
+        return mTitles[index];
+    }
+
+    public String getLocation(int index) {
+        return mLocations[index];
+    }
+
+    public long getStartMillis(int index) {
+        return mStartMillis[index];
+    }
+
+    public long getEndMillis(int index) {
+        return mEndMillis[index];
+    }
+
+    public boolean isAllDay(int index) {
+        return mAllDay[index];
+    }
+
+    public int getColor(int index) {
+        return mColors[index];
+    }
+
+    public long getCalendarId(int index) {
+        return mCalendarIds[index];
+    }
+
+    /**
+     * @return whether the user declined the event
+     */
+    public boolean isDeclined(int index) {
+        return mDeclined[index];
+    }
+
+    public int getRemovedCount() {
+        return mRemovedIds.length;
+    }
+
+    public long getRemovedId(int index) {
+        return mRemovedIds[index];
+    }
+
+    /**
+     * @return whether a delta changes nothing but maybe the window end
+     */
+    public boolean isEmpty() {
+        return mSize == 0 && mRemovedIds.length == 0;
+    }
+
+    /**
+     * @return the same events as a full batch with the given sequence, the arrays are shared
+     */
+    public EventBatch asFull(int sequence) {
+        return new EventBatch(TYPE_FULL, sequence, 0, windowEndMillis, mSize, mIds, mTitles, mLocations, mStartMillis,
+                mEndMillis, mAllDay, mColors, mCalendarIds, mDeclined, new long[0]);
+    }
+
+    /**
+     * @return whether the event at the index of this batch and the one at the other index of the other batch are the same
+     */
+    public boolean sameEvent(int index, EventBatch other, int otherIndex) {
+        return mIds[index] == other.mIds[otherIndex]
+                && mStartMillis[index] / MILLIS_PER_MINUTE == other.mStartMillis[otherIndex] / MILLIS_PER_MINUTE
+                && mEndMillis[index] / MILLIS_PER_MINUTE == other.mEndMillis[otherIndex] / MILLIS_PER_MINUTE
+                && mAllDay[index] == other.mAllDay[otherIndex]
+                && mColors[index] == other.mColors[otherIndex]
+                && mCalendarIds[index] == other.mCalendarIds[otherIndex]
+                && mDeclined[index] == other.mDeclined[otherIndex]
+                && equals(mTitles[index], other.mTitles[otherIndex])
+                && equals(mLocations[index], other.mLocations[otherIndex]);
+    }
+
+    public byte[] encode() {
+        // start order keeps the start deltas small
+        Integer[] order = new Integer[mSize];
+        for (int i = 0; i < mSize; i++)
+            order[i] = i;
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long startA = mStartMillis[a];
+                long startB = mStartMillis[b];
+                return startA < startB ? -1 : (startA == startB ? 0 : 1);
+            }
+        });
+
+        // index 0 stands for null
+        Map<String, Integer> strings = new HashMap<>();
+        Map<Integer, Integer> colors = new HashMap<>();
+        ByteArrayOutputStream stringTable = new ByteArrayOutputStream();
+        ByteArrayOutputStream colorTable = new ByteArrayOutputStream();
+        ByteArrayOutputStream events = new ByteArrayOutputStream(mSize * 8);
+
+        long previousStart = 0;
+        long previousId = 0;
+        for (int k = 0; k < mSize; k++) {
+            int i = order[k];
+            long start = mStartMillis[i] / MILLIS_PER_MINUTE;
+            long end = mEndMillis[i] / MILLIS_PER_MINUTE;
+
+            writeVarLong(events, zigZag(start - previousStart));
+            writeVarLong(events, zigZag(end - start));
+            writeVarLong(events, zigZag(mIds[i] - previousId));
+            writeVarLong(events, intern(strings, stringTable, mTitles[i]));
+            writeVarLong(events, intern(strings, stringTable, mLocations[i]));
+            writeVarLong(events, intern(colors, colorTable, mColors[i]));
+            writeVarLong(events, zigZag(mCalendarIds[i]));
+            events.write((mAllDay[i] ? FLAG_ALL_DAY : 0) | (mDeclined[i] ? FLAG_DECLINED : 0));
+
+            previousStart = start;
+            previousId = mIds[i];
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 + stringTable.size() + colorTable.size() + events.size()
+                + mRemovedIds.length * 2);
+        out.write(FORMAT_VERSION);
+        out.write(type);
+        writeVarLong(out, sequence);
+        writeVarLong(out, baseSequence);
+        writeVarLong(out, windowEndMillis / MILLIS_PER_MINUTE);
+        writeVarLong(out, strings.size());
+        writeBytes(out, stringTable);
+        writeVarLong(out, colors.size());
+        writeBytes(out, colorTable);
+        writeVarLong(out, mSize);
+        writeBytes(out, events);
+
+        long[] removed = mRemovedIds.clone();
+        Arrays.sort(removed);
+        writeVarLong(out, removed.length);
+        previousId = 0;
+        for (long id : removed) {
+            writeVarLong(out, zigZag(id - previousId));
+            previousId = id;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException when the data isn't a batch this version understands
+     */
+    public static EventBatch decode(byte[] data) {
+        try {
+            ByteBuffer in = ByteBuffer.wrap(data);
+            if (in.get() != FORMAT_VERSION)
+                throw new IllegalArgumentException("unknown batch format");
+
+            int type = in.get();
+            if (type != TYPE_FULL && type != TYPE_DELTA)
+                throw new IllegalArgumentException("unknown batch type " + type);
+            int sequence = (int) readVarLong(in);
+            int baseSequence = (int) readVarLong(in);
+            long windowEndMillis = readVarLong(in) * MILLIS_PER_MINUTE;
+
+            String[] strings = new String[checkCount(in, readVarLong(in)) + 1];
+            for (int i = 1; i < strings.length; i++) {
+                byte[] bytes = new byte[checkCount(in, readVarLong(in))];
+                in.get(bytes);
+                strings[i] = new String(bytes, UTF_8);
+            }
+
+            int[] colors = new int[checkCount(in, readVarLong(in)) + 1];
+            for (int i = 1; i < colors.length; i++)
+                colors[i] = (int) readVarLong(in);
+
+            int size = checkCount(in, readVarLong(in));
+            long[] ids = new long[size];
+            String[] titles = new String[size];
+            String[] locations = new String[size];
+            long[] startMillis = new long[size];
+            long[] endMillis = new long[size];
+            boolean[] allDay = new boolean[size];
+            int[] eventColors = new int[size];
+            long[] calendarIds = new long[size];
+            boolean[] declined = new boolean[size];
+
+            long start = 0;
+            long id = 0;
+            for (int i = 0; i < size; i++) {
+                start += unZigZag(readVarLong(in));
+                long end = start + unZigZag(readVarLong(in));
+                id += unZigZag(readVarLong(in));
+
+                ids[i] = id;
+                startMillis[i] = start * MILLIS_PER_MINUTE;
+                endMillis[i] = end * MILLIS_PER_MINUTE;
+                titles[i] = strings[(int) readVarLong(in)];
+                locations[i] = strings[(int) readVarLong(in)];
+                eventColors[i] = colors[(int) readVarLong(in)];
+                calendarIds[i] = unZigZag(readVarLong(in));
+                int flags = in.get();
+                allDay[i] = (flags & FLAG_ALL_DAY) != 0;
+                declined[i] = (flags & FLAG_DECLINED) != 0;
+            }
+
+            long[] removedIds = new long[checkCount(in, readVarLong(in))];
+            id = 0;
+            for (int i = 0; i < removedIds.length; i++) {
+                id += unZigZag(readVarLong(in));
+                removedIds[i] = id;
+            }
+
+            return new EventBatch(type, sequence, baseSequence, windowEndMillis, size, ids, titles, locations,
+                    startMillis, endMillis, allDay, eventColors, calendarIds, declined, removedIds);
+        } catch (BufferUnderflowException | ArrayIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("truncated or damaged batch", e);
+        }
+    }
+
+    /**
+     * @return the payload of a {@link SyncTransport#PATH_REQUEST} message, 0 when nothing has been applied yet
+     */
+    public static byte[] encodeRequest(int appliedSequence) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(5);
+        writeVarLong(out, appliedSequence);
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the sequence in a request, 0 when it can't be read, which asks for a full batch
+     */
+    public static int decodeRequest(byte[] data) {
+        try {
+            return (int) readVarLong(ByteBuffer.wrap(data));
+        } catch (BufferUnderflowException e) {
+            return 0;
+        }
+    }
+
+    private static <T> long intern(Map<T, Integer> table, ByteArrayOutputStream tableOut, T value) {
+        if (value == null)
+            return 0;
+
+        Integer index = table.get(value);
+        if (index == null) {
+            index = table.size() + 1;
+            table.put(value, index);
+            if (value instanceof String) {
+                byte[] bytes = ((String) value).getBytes(UTF_8);
+                writeVarLong(tableOut, bytes.length);
+                tableOut.write(bytes, 0, bytes.length);
+            } else {
+                writeVarLong(tableOut, ((Integer) value) & 0xffffffffL);
+            }
+        }
+        return index;
+    }
+
+    // a count can't be larger than the bytes left, each entry takes at least one
+    private static int checkCount(ByteBuffer in, long count) {
+        if (count < 0 || count > in.remaining())
+            throw new BufferUnderflowException();
+        return (int) count;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new BufferUnderflowException();
+    }
+
+    private static void writeBytes(ByteArrayOutputStream out, ByteArrayOutputStream bytes) {
+        byte[] array = bytes.toByteArray();
+        out.write(array, 0, array.length);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Collects the events of a window, or of a delta
+     */
+    public static class Builder {
+
+        private int mSize;
+        private long[] mIds;
+        private String[] mTitles;
+        private String[] mLocations;
+        private long[] mStartMillis;
+        private long[] mEndMillis;
+        private boolean[] mAllDay;
+        private int[] mColors;
+        private long[] mCalendarIds;
+        private boolean[] mDeclined;
+
+        private long[] mRemovedIds = new long[4];
+        private int mRemovedCount;
+
+        public Builder(int capacity) {
+            allocate(Math.max(capacity, 4));
+        }
+
+        /**
+         * @param calendarId the calendar the event is in
+         * @param declined   whether the user declined the event
+         */
+        public Builder add(long id, String title, long startMillis, long endMillis, String location, boolean allDay, int color,
+                           long calendarId, boolean declined) {
+            if (mSize == mIds.length)
+                grow();
+
+            int i = mSize++;
+            mIds[i] = id;
+            mTitles[i] = title;
+            mLocations[i] = location;
+            mStartMillis[i] = startMillis;
+            mEndMillis[i] = endMillis;
+            mAllDay[i] = allDay;
+            mColors[i] = color;
+            mCalendarIds[i] = calendarId;
+            mDeclined[i] = declined;
+            return this;
+        }
+
+        /**
+         * Adds the event at the index of the other batch
+         */
+        public Builder add(EventBatch batch, int index) {
+            return add(batch.mIds[index], batch.mTitles[index], batch.mStartMillis[index], batch.mEndMillis[index],
+                    batch.mLocations[index], batch.mAllDay[index], batch.mColors[index], batch.mCalendarIds[index],
+                    batch.mDeclined[index]);
+        }
+
+        public Builder remove(long id) {
+            if (mRemovedCount == mRemovedIds.length)
+                mRemovedIds = Arrays.copyOf(mRemovedIds, mRemovedCount * 2);
+            mRemovedIds[mRemovedCount++] = id;
+            return this;
+        }
+
+        /**
+         * @return the events as a full batch of the window ending at the given time, to be sequenced by the
+         * {@link EventSyncSender}
+         */
+        public EventBatch buildWindow(long windowEndMillis) {
+            return build(TYPE_FULL, 0, 0, windowEndMillis);
+        }
+
+        public EventBatch build(int type, int sequence, int baseSequence, long windowEndMillis) {
+            return new EventBatch(type, sequence, baseSequence, windowEndMillis, mSize, Arrays.copyOf(mIds, mSize),
+                    Arrays.copyOf(mTitles, mSize), Arrays.copyOf(mLocations, mSize), Arrays.copyOf(mStartMillis, mSize),
+                    Arrays.copyOf(mEndMillis, mSize), Arrays.copyOf(mAllDay, mSize), Arrays.copyOf(mColors, mSize),
+                    Arrays.copyOf(mCalendarIds, mSize), Arrays.copyOf(mDeclined, mSize), Arrays.copyOf(mRemovedIds, mRemovedCount));
+        }
+
+        private void grow() {
+            int capacity = mIds.length * 2;
+            mIds = Arrays.copyOf(mIds, capacity);
+            mTitles = Arrays.copyOf(mTitles, capacity);
+            mLocations = Arrays.copyOf(mLocations, capacity);
+            mStartMillis = Arrays.copyOf(mStartMillis, capacity);
+            mEndMillis = Arrays.copyOf(mEndMillis, capacity);
+            mAllDay = Arrays.copyOf(mAllDay, capacity);
+            mColors = Arrays.copyOf(mColors, capacity);
+            mCalendarIds = Arrays.copyOf(mCalendarIds, capacity);
+            mDeclined = Arrays.copyOf(mDeclined, capacity);
+        }
+
+        private void allocate(int capacity) {
+            mIds = new long[capacity];
+            mTitles = new String[capacity];
+            mLocations = new String[capacity];
+            mStartMillis = new long[capacity];
+            mEndMillis = new long[capacity];
+            mAllDay = new boolean[capacity];
+            mColors = new int[capacity];
+            mCalendarIds = new long[capacity];
+            mDeclined = new boolean[capacity];
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package pie.watchface;
+
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.provider.CalendarContract;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * The user's rules for which events show up on the face. The rules are compiled once, when the filter is
+ * built: everything the provider can evaluate becomes a selection clause with arguments, so the rows it
+ * excludes never reach the cursor, and the rest, title regular expressions, is matched in Java against
+ * precompiled patterns.
+ * <p>
+ * Not every provider accepts a selection on the instances, the wearable one may reject it. In that case
+ * the query runs without a selection and {@link #matches(Cursor, boolean)} evaluates all rules in Java.
+ * The events synced from the phone come unfiltered, the watch evaluates all rules on them in Java, see
+ * {@link #matches(String, long, long, boolean, long, boolean)}.
+ */
+public final class EventFilter {
+
+    public static final String TAG = EventFilter.class.getSimpleName();
+
+    public static final EventFilter NONE = new Builder().build();
+
+    // the preferences the filter is read from, see fromPreferences()
+    public static final String PREFERENCES_NAME = "event_filter";
+    public static final String PREF_EXCLUDED_TITLES = "excluded_titles";
+    public static final String PREF_EXCLUDED_TITLE_PATTERNS = "excluded_title_patterns";
+    public static final String PREF_CALENDAR_IDS = "calendar_ids";
+    public static final String PREF_HIDE_ALL_DAY = "hide_all_day";
+    public static final String PREF_HIDE_DECLINED = "hide_declined";
+    public static final String PREF_MIN_DURATION_MINUTES = "min_duration_minutes";
+
+    // the titles hidden until the user sets their own, the face always skipped these
+    public static final Set<String> DEFAULT_EXCLUDED_TITLES = Collections.singleton("BOL");
+
+    public static final String SORT_ORDER = CalendarContract.Instances.BEGIN + " ASC";
+
+    // the columns the renderer uses, in the order of the indices below
+    private static final String[] PROJECTION = new String[]{
+            CalendarContract.Instances._ID,
+            CalendarContract.Instances.TITLE,
+            CalendarContract.Instances.BEGIN,
+            CalendarContract.Instances.END,
+            CalendarContract.Instances.ALL_DAY,
+            CalendarContract.Instances.DISPLAY_COLOR,
+    };
+    public static final int COLUMN_ID = 0;
+    public static final int COLUMN_TITLE = 1;
+    public static final int COLUMN_BEGIN = 2;
+    public static final int COLUMN_END = 3;
+    public static final int COLUMN_ALL_DAY = 4;
+    public static final int COLUMN_DISPLAY_COLOR = 5;
+
+    // only queried when the rules have to be evaluated in Java
+    private static final String[] FALLBACK_PROJECTION = new String[]{
+            CalendarContract.Instances._ID,
+            CalendarContract.Instances.TITLE,
+            CalendarContract.Instances.BEGIN,
+            CalendarContract.Instances.END,
+            CalendarContract.Instances.ALL_DAY,
+            CalendarContract.Instances.DISPLAY_COLOR,
+            CalendarContract.Instances.CALENDAR_ID,
+            CalendarContract.Instances.SELF_ATTENDEE_STATUS,
+    };
+    private static final int COLUMN_CALENDAR_ID = 6;
+    private static final int COLUMN_SELF_ATTENDEE_STATUS = 7;
+
+    private final String[] mExcludedTitles;
+    private final Pattern[] mExcludedTitlePatterns;
+    private final long[] mCalendarIds;
+    private final boolean mHideAllDay;
+    private final boolean mHideDeclined;
+    private final long mMinDurationMillis;
+
+    // compiled from the rules above
+    private final String mSelection;
+    private final String[] mSelectionArgs;
+
+    private EventFilter(Builder builder) {
+        mExcludedTitles = builder.mExcludedTitles.toArray(new String[builder.mExcludedTitles.size()]);
+        mExcludedTitlePatterns = builder.mExcludedTitlePatterns.toArray(new Pattern[builder.mExcludedTitlePatterns.size()]);
+        mCalendarIds = new long[builder.mCalendarIds.size()];
+        for (int i = 0; i < mCalendarIds.length; i++)
+            mCalendarIds[i] = builder.mCalendarIds.get(i);
+        mHideAllDay = builder.mHideAllDay;
+        mHideDeclined = builder.mHideDeclined;
+        mMinDurationMillis = builder.mMinDurationMillis;
+
+        StringBuilder selection = new StringBuilder();
+        List<String> args = new ArrayList<>();
+
+        for (String title : mExcludedTitles) {
+            // a NULL title never matches NOT LIKE, it has to be let through explicitly
+            and(selection).append("(" + CalendarContract.Instances.TITLE + " IS NULL OR "
+                    + CalendarContract.Instances.TITLE + " NOT LIKE ? ESCAPE '\\')");
+            args.add("%" + escapeLike(title) + "%");
+        }
+        if (mCalendarIds.length > 0) {
+            and(selection).append(CalendarContract.Instances.CALENDAR_ID + " IN (");
+            for (int i = 0; i < mCalendarIds.length; i++) {
+                selection.append(i == 0 ? "?" : ",?");
+                args.add(Long.toString(mCalendarIds[i]));
+            }
+            selection.append(")");
+        }
+        if (mHideAllDay)
+            and(selection).append(CalendarContract.Instances.ALL_DAY + " = 0");
+        if (mHideDeclined) {
+            and(selection).append(CalendarContract.Instances.SELF_ATTENDEE_STATUS + " != ?");
+            args.add(Integer.toString(CalendarContract.Attendees.ATTENDEE_STATUS_DECLINED));
+        }
+        if (mMinDurationMillis > 0) {
+            // the arguments are bound as text, and the difference has no column affinity to convert it back,
+            // so an argument would never compare as greater, the number goes into the selection itself
+            and(selection).append("(" + CalendarContract.Instances.END + " - " + CalendarContract.Instances.BEGIN + ") >= "
+                    + mMinDurationMillis);
+        }
+
+        mSelection = selection.length() > 0 ? selection.toString() : null;
+        mSelectionArgs = args.isEmpty() ? null : args.toArray(new String[args.size()]);
+    }
+
+    /**
+     * Reads the filter from the preferences stored under {@link #PREFERENCES_NAME}, rules that can't be
+     * parsed are skipped
+     */
+    public static EventFilter fromPreferences(SharedPreferences preferences) {
+        Builder builder = new Builder();
+
+        for (String title : preferences.getStringSet(PREF_EXCLUDED_TITLES, DEFAULT_EXCLUDED_TITLES))
+            builder.excludeTitleContaining(title);
+
+        for (String regex : preferences.getStringSet(PREF_EXCLUDED_TITLE_PATTERNS, Collections.<String>emptySet())) {
+            try {
+                builder.excludeTitleMatching(regex);
+            } catch (PatternSyntaxException e) {
+                Log.w(TAG, "skipping invalid title pattern " + regex, e);
+            }
+        }
+
+        Set<String> calendarIds = preferences.getStringSet(PREF_CALENDAR_IDS, Collections.<String>emptySet());
+        for (String calendarId : calendarIds) {
+            try {
+                builder.onlyCalendar(Long.parseLong(calendarId));
+            } catch (NumberFormatException e) {
+                Log.w(TAG, "skipping invalid calendar id " + calendarId);
+            }
+        }
+
+        return builder.hideAllDay(preferences.getBoolean(PREF_HIDE_ALL_DAY, false))
+                .hideDeclined(preferences.getBoolean(PREF_HIDE_DECLINED, false))
+                .minDuration(TimeUnit.MINUTES.toMillis(preferences.getInt(PREF_MIN_DURATION_MINUTES, 0)))
+                .build();
+    }
+
+    /**
+     * @param pushedDown whether the query ran with {@link #getSelection()}, or without a selection
+     * @return the columns to query, see the COLUMN_ constants for the ones the renderer reads
+     */
+    public String[] getProjection(boolean pushedDown) {
+        return pushedDown || mSelection == null ? PROJECTION : FALLBACK_PROJECTION;
+    }
+
+    /**
+     * @return the selection excluding the filtered rows, or null when the provider has nothing to filter
+     */
+    public String getSelection() {
+        return mSelection;
+    }
+
+    public String[] getSelectionArgs() {
+        return mSelectionArgs;
+    }
+
+    /**
+     * @param pushedDown whether the query ran with {@link #getSelection()}, then only the rules the provider
+     *                   couldn't evaluate are checked
+     * @return whether the cursor's current row passes the filter
+     */
+    public boolean matches(Cursor cursor, boolean pushedDown) {
+        String title = null;
+        if (mExcludedTitlePatterns.length > 0 || (!pushedDown && mExcludedTitles.length > 0))
+            title = cursor.isNull(COLUMN_TITLE) ? null : cursor.getString(COLUMN_TITLE);
+
+        if (title != null) {
+            for (Pattern pattern : mExcludedTitlePatterns) {
+                if (pattern.matcher(title).find())
+                    return false;
+            }
+        }
+
+        if (pushedDown || mSelection == null)
+            return true;
+
+        return matchesSelection(title, cursor.getLong(COLUMN_BEGIN), cursor.getLong(COLUMN_END), cursor.getInt(COLUMN_ALL_DAY) != 0,
+                cursor.getLong(COLUMN_CALENDAR_ID),
+                cursor.getInt(COLUMN_SELF_ATTENDEE_STATUS) == CalendarContract.Attendees.ATTENDEE_STATUS_DECLINED);
+    }
+
+    /**
+     * Evaluates all rules in Java, for events that didn't come from a query
+     *
+     * @param declined whether the user declined the event
+     * @return whether the event passes the filter
+     */
+    public boolean matches(String title, long beginMillis, long endMillis, boolean allDay, long calendarId, boolean declined) {
+        if (title != null) {
+            for (Pattern pattern : mExcludedTitlePatterns) {
+                if (pattern.matcher(title).find())
+                    return false;
+            }
+        }
+        return matchesSelection(title, beginMillis, endMillis, allDay, calendarId, declined);
+    }
+
+    // the rules of the selection, evaluated in Java
+    private boolean matchesSelection(String title, long beginMillis, long endMillis, boolean allDay, long calendarId, boolean declined) {
+        if (title != null) {
+            for (String excluded : mExcludedTitles) {
+                // LIKE is case insensitive for ASCII, so is this
+                if (containsIgnoreCase(title, excluded))
+                    return false;
+            }
+        }
+        if (mCalendarIds.length > 0 && !contains(mCalendarIds, calendarId))
+            return false;
+        if (mHideAllDay && allDay)
+            return false;
+        if (mHideDeclined && declined)
+            return false;
+        return mMinDurationMillis <= 0 || endMillis - beginMillis >= mMinDurationMillis;
+    }
+
+    /**
+     * @return whether nothing gets filtered at all
+     */
+    public boolean isEmpty() {
+        return mSelection == null && mExcludedTitlePatterns.length == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "EventFilter{selection=" + mSelection + ", args=" + Arrays.toString(mSelectionArgs)
+                + ", patterns=" + Arrays.toString(mExcludedTitlePatterns) + "}";
+    }
+
+    private static StringBuilder and(StringBuilder selection) {
+        if (selection.length() > 0)
+            selection.append(" AND ");
+        return selection;
+    }
+
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static boolean containsIgnoreCase(String text, String part) {
+        for (int i = 0; i + part.length() <= text.length(); i++) {
+            if (text.regionMatches(true, i, part, 0, part.length()))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean contains(long[] values, long value) {
+        for (long v : values) {
+            if (v == value)
+                return true;
+        }
+        return false;
+    }
+
+    public static class Builder {
+
+        private final List<String> mExcludedTitles = new ArrayList<>();
+        private final List<Pattern> mExcludedTitlePatterns = new ArrayList<>();
+        private final List<Long> mCalendarIds = new ArrayList<>();
+        private boolean mHideAllDay;
+        private boolean mHideDeclined;
+        private long mMinDurationMillis;
+
+        /**
+         * Hides the events with the text anywhere in their title, ignoring case
+         */
+        public Builder excludeTitleContaining(String text) {
+            if (text != null && !text.isEmpty())
+                mExcludedTitles.add(text);
+            return this;
+        }
+
+        /**
+         * Hides the events with a title the regular expression is found in, only ever evaluated in Java
+         *
+         * @throws PatternSyntaxException when the expression is invalid
+         */
+        public Builder excludeTitleMatching(String regex) {
+            mExcludedTitlePatterns.add(Pattern.compile(regex));
+            return this;
+        }
+
+        /**
+         * Limits the events to the given calendar, and any other calendar passed here
+         */
+        public Builder onlyCalendar(long calendarId) {
+            mCalendarIds.add(calendarId);
+            return this;
+        }
+
+        public Builder hideAllDay(boolean hideAllDay) {
+            this.mHideAllDay = hideAllDay;
+            return this;
+        }
+
+        /**
+         * Hides the events the user declined
+         */
+        public Builder hideDeclined(boolean hideDeclined) {
+            this.mHideDeclined = hideDeclined;
+            return this;
+        }
+
+        /**
+         * Hides the events shorter than the given duration, 0 shows them all
+         */
+        public Builder minDuration(long millis) {
+            this.mMinDurationMillis = millis;
+            return this;
+        }
+
+        public EventFilter build() {
+            return new EventFilter(this);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package pie.watchface;
+
+import android.support.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * The phone side of the sync: remembers the window the watch got last, and turns every new window into
+ * the smallest batch that brings the watch up to date. That is a delta while the watch is known to hold
+ * the last batch, and the full window when it isn't, after a lost message or when either side restarted.
+ */
+public class EventSyncSender {
+
+    // the window the receiver holds once it applied the last batch, and that batch's sequence. The
+    // sequences of a new sender start anywhere, so a watch still holding a batch of an earlier phone
+    // process is very unlikely to take a delta of this one for its own.
+    private EventBatch mSent;
+    private int mSequence = 1 + new Random().nextInt(Integer.MAX_VALUE / 2);
+
+    /**
+     * Sends the window to the watch, assuming it holds the last batch. A watch that missed a batch will
+     * ask for the events again, see {@link #sync(EventBatch, int, SyncTransport)}.
+     *
+     * @return the bytes sent, 0 when the watch is up to date already
+     */
+    public synchronized int push(EventBatch window, SyncTransport transport) {
+        return sync(window, mSequence, transport);
+    }
+
+    /**
+     * Answers a request of the watch
+     *
+     * @param receiverSequence the sequence of the last batch the watch applied
+     * @return the bytes sent, 0 when the watch is up to date already
+     */
+    public synchronized int sync(EventBatch window, int receiverSequence, SyncTransport transport) {
+        byte[] batch = nextBatch(window, receiverSequence);
+        if (batch == null)
+            return 0;
+
+        transport.send(SyncTransport.PATH_EVENTS, batch);
+        return batch.length;
+    }
+
+    /**
+     * @return the encoded batch bringing the receiver to the window, null when it has it already
+     */
+    @Nullable
+    public synchronized byte[] nextBatch(EventBatch window, int receiverSequence) {
+        EventBatch batch;
+        if (mSent == null || receiverSequence != mSequence) {
+            batch = window.asFull(mSequence + 1);
+        } else {
+            batch = diff(mSent, window, mSequence + 1, mSequence);
+            if (batch.isEmpty() && window.windowEndMillis == mSent.windowEndMillis)
+                return null;
+        }
+
+        mSent = window;
+        mSequence = batch.sequence;
+        return batch.encode();
+    }
+
+    /**
+     * Forgets what the watch holds, the next batch will be a full one
+     */
+    public synchronized void reset() {
+        mSent = null;
+    }
+
+    private static EventBatch diff(EventBatch previous, EventBatch window, int sequence, int baseSequence) {
+        Map<Long, Integer> previousIndices = new HashMap<>(previous.size() * 2);
+        for (int i = 0; i < previous.size(); i++)
+            previousIndices.put(previous.getId(i), i);
+
+        EventBatch.Builder delta = new EventBatch.Builder(4);
+        Set<Long> ids = new HashSet<>(window.size() * 2);
+        for (int i = 0; i < window.size(); i++) {
+            long id = window.getId(i);
+            ids.add(id);
+
+            Integer previousIndex = previousIndices.get(id);
+            if (previousIndex == null || !window.sameEvent(i, previous, previousIndex))
+                delta.add(window, i);
+        }
+
+        for (int i = 0; i < previous.size(); i++) {
+            if (!ids.contains(previous.getId(i)))
+                delta.remove(previous.getId(i));
+        }
+
+        return delta.build(EventBatch.TYPE_DELTA, sequence, baseSequence, window.windowEndMillis);
+    }
+}
@@ -0,0 +1,62 @@
+package pie.watchface;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Two transport ends connected directly, for running the phone and the watch side of the sync in one
+ * process. A message is delivered to the other end's receiver on the sending thread, before
+ * {@link #send(String, byte[])} returns, and dropped when the other end has no receiver.
+ */
+public class InProcessSyncTransport implements SyncTransport {
+
+    private InProcessSyncTransport mPeer;
+    private volatile Receiver mReceiver;
+
+    private long mBytesSent;
+    private int mMessagesSent;
+
+    private InProcessSyncTransport() {
+    }
+
+    /**
+     * @return two ends connected to each other, e.g. the phone and the watch
+     */
+    public static InProcessSyncTransport[] pair() {
+        InProcessSyncTransport a = new InProcessSyncTransport();
+        InProcessSyncTransport b = new InProcessSyncTransport();
+        a.mPeer = b;
+        b.mPeer = a;
+        return new InProcessSyncTransport[]{a, b};
+    }
+
+    @Override
+    public void send(String path, byte[] data) {
+        mBytesSent += data.length;
+        mMessagesSent++;
+
+        Receiver receiver = mPeer.mReceiver;
+        if (receiver != null)
+            receiver.onMessage(path, data);
+    }
+
+    @Override
+    public void setReceiver(@Nullable Receiver receiver) {
+        this.mReceiver = receiver;
+    }
+
+    @Override
+    public void close() {
+        mReceiver = null;
+    }
+
+    /**
+     * @return the payload bytes sent from this end
+     */
+    public long getBytesSent() {
+        return mBytesSent;
+    }
+
+    public int getMessagesSent() {
+        return mMessagesSent;
+    }
+}
@@ -0,0 +1,40 @@
+package pie.watchface;
+
+import android.support.annotation.Nullable;
+
+/**
+ * Carries the event sync messages between the phone and the watch. On a device this is the Wearable
+ * message API, see {@link WearableSyncTransport}, anywhere else {@link InProcessSyncTransport} connects
+ * two ends directly.
+ */
+public interface SyncTransport {
+
+    // a batch of events, phone to watch, see EventBatch
+    String PATH_EVENTS = "/pie/events";
+
+    // the watch asking for the events, with the sequence of the last batch it applied
+    String PATH_REQUEST = "/pie/events/request";
+
+    interface Receiver {
+        /**
+         * Called for every message from the other end, on a thread of the transport's choosing
+         */
+        void onMessage(String path, byte[] data);
+    }
+
+    /**
+     * Sends the message to the other end, asynchronously, it never blocks the caller. Messages are not
+     * guaranteed to arrive, the sync recovers from lost ones by their sequence numbers.
+     */
+    void send(String path, byte[] data);
+
+    /**
+     * @param receiver gets the messages of the other end, or null to stop receiving them
+     */
+    void setReceiver(@Nullable Receiver receiver);
+
+    /**
+     * Releases the connection once the messages already sent have gone out
+     */
+    void close();
+}
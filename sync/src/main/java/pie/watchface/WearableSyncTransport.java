@@ -0,0 +1,93 @@
+package pie.watchface;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.google.android.gms.common.api.GoogleApiClient;
+import com.google.android.gms.common.api.ResultCallback;
+import com.google.android.gms.wearable.MessageApi;
+import com.google.android.gms.wearable.MessageEvent;
+import com.google.android.gms.wearable.Node;
+import com.google.android.gms.wearable.NodeApi;
+import com.google.android.gms.wearable.Wearable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The sync messages over the Wearable message API, to every connected node. Calls made before the
+ * client has connected are queued by the client, so sending right after creating the transport is fine.
+ * <p>
+ * Only receives while a {@link SyncTransport.Receiver} is set, the phone gets the watch's requests
+ * through its listener service instead, which also runs when the app doesn't.
+ */
+public class WearableSyncTransport implements SyncTransport, MessageApi.MessageListener {
+
+    public static final String TAG = WearableSyncTransport.class.getSimpleName();
+
+    private final GoogleApiClient mClient;
+    private volatile Receiver mReceiver;
+
+    // the client disconnects once the messages in flight have been handed over
+    private final AtomicInteger mPendingMessages = new AtomicInteger();
+    private volatile boolean mClosed;
+
+    public WearableSyncTransport(Context context) {
+        mClient = new GoogleApiClient.Builder(context)
+                .addApi(Wearable.API)
+                .build();
+        mClient.connect();
+    }
+
+    @Override
+    public void send(final String path, final byte[] data) {
+        mPendingMessages.incrementAndGet();
+        Wearable.NodeApi.getConnectedNodes(mClient).setResultCallback(new ResultCallback<NodeApi.GetConnectedNodesResult>() {
+            @Override
+            public void onResult(NodeApi.GetConnectedNodesResult result) {
+                for (Node node : result.getNodes()) {
+                    mPendingMessages.incrementAndGet();
+                    Wearable.MessageApi.sendMessage(mClient, node.getId(), path, data).setResultCallback(new ResultCallback<MessageApi.SendMessageResult>() {
+                        @Override
+                        public void onResult(MessageApi.SendMessageResult result) {
+                            if (!result.getStatus().isSuccess())
+                                Log.w(TAG, "sending " + path + " failed: " + result.getStatus().getStatusMessage());
+                            onMessageDone();
+                        }
+                    });
+                }
+                onMessageDone();
+            }
+        });
+    }
+
+    @Override
+    public void setReceiver(@Nullable Receiver receiver) {
+        Receiver previous = mReceiver;
+        mReceiver = receiver;
+        if (previous == null && receiver != null)
+            Wearable.MessageApi.addListener(mClient, this);
+        else if (previous != null && receiver == null)
+            Wearable.MessageApi.removeListener(mClient, this);
+    }
+
+    @Override
+    public void onMessageReceived(MessageEvent messageEvent) {
+        Receiver receiver = mReceiver;
+        if (receiver != null)
+            receiver.onMessage(messageEvent.getPath(), messageEvent.getData());
+    }
+
+    @Override
+    public void close() {
+        setReceiver(null);
+        mClosed = true;
+        if (mPendingMessages.get() == 0)
+            mClient.disconnect();
+    }
+
+    private void onMessageDone() {
+        if (mPendingMessages.decrementAndGet() == 0 && mClosed)
+            mClient.disconnect();
+    }
+}
@@ -0,0 +1,161 @@
+package pie.watchface;
+
+import android.graphics.Color;
+import android.graphics.Point;
+import android.graphics.PointF;
+import android.graphics.RectF;
+
+import java.util.List;
+
+/**
+ * Draws the watch face in ambient mode. The whole ambient frame is rendered at most once per minute
+ * into a reusable layer, every other ambient draw just blits it.
+ * <p>
+ * On low-bit ambient screens nothing is anti-aliased, shaded or shadowed. With burn-in protection the
+ * frame gets shifted by a few pixels every minute and the center dot is drawn as an outline.
+ */
+public class AmbientRenderer {
+
+    // the pattern the frame moves along with burn-in protection, one step per minute, in dips
+    private static final int[][] BURN_IN_SHIFTS = {
+            {0, 0}, {2, 0}, {2, 2}, {0, 2}, {-2, 2}, {-2, 0}, {-2, -2}, {0, -2}, {2, -2}
+    };
+
+    private boolean mLowBitAmbientMode;
+    private boolean mBurnInProtectionMode;
+
+    private Brush mTextBrush;
+    private Brush mDialBrush;
+    private Brush mDotBrush;
+
+    // the dimensions the frame was rendered with
+    private RenderConfig mConfig;
+
+    // the rendered frame, opaque and mostly white on black, so it does with 16 bit at half the memory
+    private final LayerCache mFrame = new LayerCache(RenderTarget.LAYER_OPAQUE_LOW_DEPTH);
+    private int mFrameMinutes = -1;
+
+    private final Point mNowPoint = new Point();
+
+    public AmbientRenderer() {
+        createPaintBrushes();
+    }
+
+    public void setLowBitAmbientMode(boolean lowBitAmbientMode) {
+        if (this.mLowBitAmbientMode == lowBitAmbientMode)
+            return;
+
+        this.mLowBitAmbientMode = lowBitAmbientMode;
+        createPaintBrushes();
+        invalidate();
+    }
+
+    public void setBurnInProtectionMode(boolean burnInProtectionMode) {
+        if (this.mBurnInProtectionMode == burnInProtectionMode)
+            return;
+
+        this.mBurnInProtectionMode = burnInProtectionMode;
+        createPaintBrushes();
+        invalidate();
+    }
+
+    /**
+     * Forces the frame to be rendered again on the next draw, e.g. because the events changed
+     */
+    public void invalidate() {
+        mFrame.invalidate();
+    }
+
+    public void draw(RenderTarget target, RenderConfig config, int nowMinutes, float currentAngle,
+                     List<EventLayout> layouts, int layoutCount) {
+        if (mConfig != config) {
+            mConfig = config;
+            mTextBrush.setTextSize(config.titleTextSize);
+            invalidate();
+        }
+
+        if (!mFrame.isValid() || mFrameMinutes != nowMinutes) {
+            RenderStats.count(RenderStats.COUNT_AMBIENT_FRAME_MISSES);
+            renderFrame(mFrame.beginDrawing(target, config.bounds.width(), config.bounds.height()), currentAngle, layouts, layoutCount);
+            mFrame.endDrawing();
+            mFrameMinutes = nowMinutes;
+        } else {
+            RenderStats.count(RenderStats.COUNT_AMBIENT_FRAME_HITS);
+        }
+
+        float shiftX = 0;
+        float shiftY = 0;
+        if (mBurnInProtectionMode) {
+            int[] shift = BURN_IN_SHIFTS[nowMinutes % BURN_IN_SHIFTS.length];
+            shiftX = shift[0] * config.burnInShiftUnit;
+            shiftY = shift[1] * config.burnInShiftUnit;
+        }
+
+        target.clear(Color.BLACK);
+        mFrame.draw(target, shiftX, shiftY);
+    }
+
+    public void release() {
+        mFrame.release();
+    }
+
+    private void renderFrame(RenderTarget target, float currentAngle, List<EventLayout> layouts, int layoutCount) {
+        RenderConfig config = mConfig;
+        target.clear(Color.BLACK);
+
+        // event titles
+        for (int i = 0; i < layoutCount; i++) {
+            EventLayout layout = layouts.get(i);
+            if (!layout.drawTitle)
+                continue;
+
+            mTextBrush.setTextAlign(layout.titleAlign);
+            mTextBrush.setGradient(mLowBitAmbientMode ? null : layout.titleGradient);
+            target.drawTextOnLine(layout.title, layout.titleStart.x, layout.titleStart.y, layout.titleStop.x, layout.titleStop.y,
+                    layout.titleHOffset, layout.titleVOffset, mTextBrush);
+        }
+
+        PointF center = config.center;
+        RectF dial = config.dialBounds;
+        float markerLength = config.markerLength;
+
+        // current time indicator
+        Point nowPoint = config.dial.project(currentAngle, mNowPoint);
+        target.drawLine(center.x, center.y, nowPoint.x, nowPoint.y, mDialBrush);
+
+        // center dot
+        target.drawCircle(center.x, center.y, config.centerDotRadius, mDotBrush);
+
+        // hour markers
+        target.drawLine(center.x, dial.bottom, center.x, dial.bottom - markerLength, mDialBrush);
+        target.drawLine(center.x, dial.top, center.x, dial.top + markerLength, mDialBrush);
+        target.drawLine(dial.right, center.y, dial.right - markerLength, center.y, mDialBrush);
+        target.drawLine(dial.left, center.y, dial.left + markerLength, center.y, mDialBrush);
+    }
+
+    private void createPaintBrushes() {
+        boolean antiAlias = !mLowBitAmbientMode;
+
+        // the brush used to paint the event titles
+        mTextBrush = new Brush();
+        mTextBrush.setColor(Color.WHITE);
+        mTextBrush.setAntiAlias(antiAlias);
+        if (mConfig != null)
+            mTextBrush.setTextSize(mConfig.titleTextSize);
+        mTextBrush.setFont("sans-serif-condensed", Brush.FONT_NORMAL);
+
+        // the brush used to paint the hour markers and current time marker, no shadows in ambient mode
+        mDialBrush = new Brush();
+        mDialBrush.setColor(Color.WHITE);
+        mDialBrush.setStrokeWidth(6.0f);
+        mDialBrush.setAntiAlias(antiAlias);
+        mDialBrush.setRoundCap(true);
+
+        // the brush used to paint the center dot, only an outline with burn-in protection
+        mDotBrush = new Brush();
+        mDotBrush.setColor(mLowBitAmbientMode ? Color.WHITE : Color.parseColor("#C9C9C9"));
+        mDotBrush.setStrokeWidth(2.0f);
+        mDotBrush.setAntiAlias(antiAlias);
+        mDotBrush.setStroke(mBurnInProtectionMode);
+    }
+}
@@ -0,0 +1,216 @@
+package pie.watchface;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.Nullable;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+/**
+ * Decodes the background image on a background thread, subsampled to the size it is drawn at, so
+ * the full resolution image never sits on the heap and the first frame doesn't wait for it.
+ * <p>
+ * The decoded bitmap is kept for one size and pixel format, asking for another one decodes again.
+ * Until the bitmap is ready {@link #get(int, int)} returns null and the owner draws a solid fill.
+ * <p>
+ * A decode that fails, usually out of memory, is repeated at RGB_565 right away, and after a while once that
+ * fails as well, so the image still shows up once memory is available again.
+ */
+public class BackgroundImage {
+
+    public static final String TAG = BackgroundImage.class.getSimpleName();
+
+    // the most an intermediate decode may take before it gets subsampled further
+    private static final int MAX_DECODE_BYTES = 2 * 1024 * 1024;
+
+    // the wait before a decode that failed at RGB_565 is repeated
+    private static final long RETRY_DELAY_MILLIS = 10 * DateUtils.SECOND_IN_MILLIS;
+
+    public interface Listener {
+        /**
+         * Called on the main thread when a newly decoded bitmap is ready to be drawn
+         */
+        void onImageReady();
+    }
+
+    private final Resources mResources;
+    private final int mResourceId;
+    private Listener mListener;
+
+    private final HandlerThread mDecoderThread;
+    private final Handler mDecoderHandler;
+    private final Handler mMainHandler;
+
+    // only touched on the main thread
+    private boolean mLowMemory;
+    private boolean mDecodeFailed;
+    private Bitmap mBitmap;
+    private Bitmap.Config mBitmapConfig;
+    private int mRequestedWidth;
+    private int mRequestedHeight;
+    private Bitmap.Config mRequestedConfig;
+
+    // forgets the failed request, so the next get() decodes again
+    private final Runnable mRetryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mRequestedConfig = null;
+        }
+    };
+
+    public BackgroundImage(Context context, int resourceId) {
+        this.mResources = context.getResources();
+        this.mResourceId = resourceId;
+
+        mDecoderThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mDecoderThread.start();
+        mDecoderHandler = new Handler(mDecoderThread.getLooper());
+        mMainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * @param listener notified once a bitmap is ready, may be null
+     */
+    public void setListener(@Nullable Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * Decodes to RGB_565 instead of ARGB_8888, half the memory, the background is opaque anyway
+     */
+    public void setLowMemory(boolean lowMemory) {
+        this.mLowMemory = lowMemory;
+    }
+
+    /**
+     * @return the image scaled to the given size, or null while it is still being decoded
+     */
+    @Nullable
+    public Bitmap get(int width, int height) {
+        Bitmap.Config config = mLowMemory || mDecodeFailed ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+
+        if (width != mRequestedWidth || height != mRequestedHeight || config != mRequestedConfig) {
+            mRequestedWidth = width;
+            mRequestedHeight = height;
+            mRequestedConfig = config;
+            requestDecode(width, height, config);
+        }
+
+        return mBitmap != null && mBitmapConfig == config && hasSize(mBitmap, width, height) ? mBitmap : null;
+    }
+
+    /**
+     * Stops the decoder thread and frees the bitmap
+     */
+    public void release() {
+        mDecoderHandler.removeCallbacksAndMessages(null);
+        mMainHandler.removeCallbacksAndMessages(null);
+        mDecoderThread.quit();
+        if (mBitmap != null) {
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+        mRequestedConfig = null;
+    }
+
+    private void requestDecode(final int width, final int height, final Bitmap.Config config) {
+        // a pending decode or retry for an older size is pointless now
+        mDecoderHandler.removeCallbacksAndMessages(null);
+        mMainHandler.removeCallbacks(mRetryRunnable);
+        if (width <= 0 || height <= 0)
+            return;
+
+        mDecoderHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final Bitmap bitmap = decode(width, height, config);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (bitmap != null)
+                            publish(bitmap, width, height, config);
+                        else
+                            retry(width, height, config);
+                    }
+                });
+            }
+        });
+    }
+
+    // runs on the main thread
+    private void publish(Bitmap bitmap, int width, int height, Bitmap.Config config) {
+        if (width != mRequestedWidth || height != mRequestedHeight || config != mRequestedConfig) {
+            // requested another size in the meantime
+            bitmap.recycle();
+            return;
+        }
+
+        // the old bitmap has already been drawn into the layers that used it
+        if (mBitmap != null)
+            mBitmap.recycle();
+        mBitmap = bitmap;
+        mBitmapConfig = config;
+
+        if (mListener != null)
+            mListener.onImageReady();
+    }
+
+    // runs on the main thread, after the decode for the given request failed
+    private void retry(int width, int height, Bitmap.Config config) {
+        if (width != mRequestedWidth || height != mRequestedHeight || config != mRequestedConfig)
+            return;
+
+        // half the memory may fit, the next get() asks for it, otherwise wait for some to be freed
+        if (config != Bitmap.Config.RGB_565)
+            mDecodeFailed = true;
+        else
+            mMainHandler.postDelayed(mRetryRunnable, RETRY_DELAY_MILLIS);
+    }
+
+    // runs on the decoder thread
+    private Bitmap decode(int width, int height, Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(mResources, mResourceId, options);
+
+        int bytesPerPixel = config == Bitmap.Config.RGB_565 ? 2 : 4;
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= width && options.outHeight / (sampleSize * 2) >= height)
+            sampleSize *= 2;
+        while ((long) (options.outWidth / sampleSize) * (options.outHeight / sampleSize) * bytesPerPixel > MAX_DECODE_BYTES)
+            sampleSize *= 2;
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = config;
+        options.inDither = config == Bitmap.Config.RGB_565;
+
+        Bitmap decoded = null;
+        try {
+            decoded = BitmapFactory.decodeResource(mResources, mResourceId, options);
+            if (decoded == null || hasSize(decoded, width, height))
+                return decoded;
+
+            Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true /* filter */);
+            if (scaled != decoded)
+                decoded.recycle();
+            return scaled;
+        } catch (OutOfMemoryError e) {
+            Log.w(TAG, "decoding the background image failed", e);
+            if (decoded != null)
+                decoded.recycle();
+            return null;
+        }
+    }
+
+    private static boolean hasSize(Bitmap bitmap, int width, int height) {
+        return bitmap.getWidth() == width && bitmap.getHeight() == height;
+    }
+}
@@ -0,0 +1,200 @@
+package pie.watchface;
+
+/**
+ * A platform independent description of how to draw, the {@link RenderTarget} counterpart of a paint.
+ * <p>
+ * The color, text alignment, gradient and gradient rotation can be changed for every draw call for free. Changing any other
+ * property bumps the brush generation, which makes a render target rebuild whatever it derived from it.
+ */
+public class Brush {
+
+    public static final int FONT_NORMAL = 0;
+    public static final int FONT_BOLD = 1;
+    public static final int FONT_ITALIC = 2;
+
+    public enum Align {
+        LEFT, CENTER, RIGHT
+    }
+
+    // changing these is free
+    private int mColor = 0xFF000000;
+    private Align mTextAlign = Align.LEFT;
+    private Gradient mGradient;
+    private float mGradientRotation;
+
+    // changing these bumps the generation
+    private boolean mAntiAlias;
+    private boolean mStroke;
+    private boolean mRoundCap;
+    private float mStrokeWidth;
+    private float mTextSize = 12;
+    private String mFontFamily;
+    private int mFontStyle = FONT_NORMAL;
+    private float mShadowRadius;
+    private float mShadowDx;
+    private float mShadowDy;
+    private int mShadowColor;
+    private int mGeneration;
+
+    // whatever a render target derived from this brush, e.g. a paint, see getGeneration()
+    public Object nativeBrush;
+    public int nativeGeneration = -1;
+
+    public Brush() {
+    }
+
+    public Brush(Brush brush) {
+        this.mColor = brush.mColor;
+        this.mTextAlign = brush.mTextAlign;
+        this.mGradient = brush.mGradient;
+        this.mGradientRotation = brush.mGradientRotation;
+        this.mAntiAlias = brush.mAntiAlias;
+        this.mStroke = brush.mStroke;
+        this.mRoundCap = brush.mRoundCap;
+        this.mStrokeWidth = brush.mStrokeWidth;
+        this.mTextSize = brush.mTextSize;
+        this.mFontFamily = brush.mFontFamily;
+        this.mFontStyle = brush.mFontStyle;
+        this.mShadowRadius = brush.mShadowRadius;
+        this.mShadowDx = brush.mShadowDx;
+        this.mShadowDy = brush.mShadowDy;
+        this.mShadowColor = brush.mShadowColor;
+    }
+
+    public int getGeneration() {
+        return mGeneration;
+    }
+
+    public int getColor() {
+        return mColor;
+    }
+
+    public void setColor(int color) {
+        this.mColor = color;
+    }
+
+    public void setAlpha(int alpha) {
+        this.mColor = (mColor & 0x00FFFFFF) | (alpha << 24);
+    }
+
+    public Align getTextAlign() {
+        return mTextAlign;
+    }
+
+    public void setTextAlign(Align textAlign) {
+        this.mTextAlign = textAlign;
+    }
+
+    public Gradient getGradient() {
+        return mGradient;
+    }
+
+    public void setGradient(Gradient gradient) {
+        this.mGradient = gradient;
+    }
+
+    public float getGradientRotation() {
+        return mGradientRotation;
+    }
+
+    /**
+     * @param degrees the clockwise rotation of the gradient around its first point, the center of a sweep
+     */
+    public void setGradientRotation(float degrees) {
+        this.mGradientRotation = degrees;
+    }
+
+    public boolean isAntiAlias() {
+        return mAntiAlias;
+    }
+
+    public void setAntiAlias(boolean antiAlias) {
+        this.mAntiAlias = antiAlias;
+        mGeneration++;
+    }
+
+    public boolean isStroke() {
+        return mStroke;
+    }
+
+    /**
+     * @param stroke whether shapes get outlined instead of filled
+     */
+    public void setStroke(boolean stroke) {
+        this.mStroke = stroke;
+        mGeneration++;
+    }
+
+    public boolean isRoundCap() {
+        return mRoundCap;
+    }
+
+    public void setRoundCap(boolean roundCap) {
+        this.mRoundCap = roundCap;
+        mGeneration++;
+    }
+
+    public float getStrokeWidth() {
+        return mStrokeWidth;
+    }
+
+    public void setStrokeWidth(float strokeWidth) {
+        this.mStrokeWidth = strokeWidth;
+        mGeneration++;
+    }
+
+    public float getTextSize() {
+        return mTextSize;
+    }
+
+    public void setTextSize(float textSize) {
+        this.mTextSize = textSize;
+        mGeneration++;
+    }
+
+    public String getFontFamily() {
+        return mFontFamily;
+    }
+
+    public int getFontStyle() {
+        return mFontStyle;
+    }
+
+    /**
+     * @param family the font family, or null for the default font
+     * @param style one of the FONT_ constants
+     */
+    public void setFont(String family, int style) {
+        this.mFontFamily = family;
+        this.mFontStyle = style;
+        mGeneration++;
+    }
+
+    public float getShadowRadius() {
+        return mShadowRadius;
+    }
+
+    public float getShadowDx() {
+        return mShadowDx;
+    }
+
+    public float getShadowDy() {
+        return mShadowDy;
+    }
+
+    public int getShadowColor() {
+        return mShadowColor;
+    }
+
+    public void setShadow(float radius, float dx, float dy, int color) {
+        this.mShadowRadius = radius;
+        this.mShadowDx = dx;
+        this.mShadowDy = dy;
+        this.mShadowColor = color;
+        mGeneration++;
+    }
+
+    public void clearShadow() {
+        setShadow(0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,423 @@
+package pie.watchface;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.wearable.provider.WearableCalendarContract;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Loads the calendar events on a background thread and publishes them as an immutable
+ * {@link EventSnapshot}. The renderer only ever reads the last published snapshot, so a
+ * slow provider query never blocks a frame.
+ * <p>
+ * The events of the next 24 hours are prefetched into an {@link EventRing} with one query, and the
+ * snapshots are cut out of it as the window slides along. Ended events expire from the ring, and only
+ * once the window gets close to the end of the prefetched span is the newly exposed span queried.
+ * The whole span is only queried again when the provider signals a change.
+ * <p>
+ * The loader wakes up by itself at the next instant the dial changes: an event entering the window,
+ * starting or ending. Between those the time tick only moves the hand, so a day needs a handful of
+ * refreshes instead of one per minute. A failed query is repeated after a delay that doubles with every
+ * further failure, or as soon as the provider signals a change, so a missing permission isn't polled.
+ * <p>
+ * After every query the prefetched events are saved to an {@link EventSnapshotFile}, and a new loader
+ * restores its first snapshot from there, so a new engine draws events right away while the first query
+ * is still running.
+ * <p>
+ * Once events synced from the phone have arrived, see {@link SyncedEventSource}, they are used instead
+ * of the source, the phone sees the whole calendar. The event filter applies to both.
+ */
+public class CalendarEventLoader {
+
+    public static final String TAG = CalendarEventLoader.class.getSimpleName();
+
+    // the span of time shown on the dial
+    public static final long WINDOW_LENGTH_MILLIS = DateUtils.DAY_IN_MILLIS / 2;
+
+    // how far ahead the events are prefetched, the window slides along for half of it without a query
+    public static final long PREFETCH_LENGTH_MILLIS = DateUtils.DAY_IN_MILLIS;
+
+    // the wait before a failed query is repeated, doubled after every further failure up to the maximum
+    private static final long RETRY_MIN_DELAY_MILLIS = DateUtils.MINUTE_IN_MILLIS;
+    private static final long RETRY_MAX_DELAY_MILLIS = 30 * DateUtils.MINUTE_IN_MILLIS;
+
+    // the file the prefetched events are saved in, in the directory excluded from backups, they are private calendar data
+    public static final String SNAPSHOT_FILE_NAME = "events.snapshot";
+
+    /**
+     * Where the events come from, the calendar provider by default
+     */
+    public interface EventSource {
+        /**
+         * Called on the loader thread, returns all events overlapping the window, sorted by start time
+         */
+        @NonNull
+        EventStore query(long beginMillis, long endMillis);
+    }
+
+    public interface Listener {
+        /**
+         * Called on the main thread every time a new snapshot has been published
+         */
+        void onSnapshotPublished(@NonNull EventSnapshot snapshot);
+    }
+
+    /**
+     * The time the window is based on, the system time by default
+     */
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    private static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final Context mContext;
+    private final EventSource mEventSource;
+    private final EventSnapshotFile mSnapshotFile;
+    private final Listener mListener;
+    private volatile Clock mClock = SYSTEM_CLOCK;
+
+    // applied by the default source and the synced one, a custom source does its own filtering
+    private volatile EventFilter mEventFilter = EventFilter.NONE;
+
+    // preferred over the source once it has events
+    private volatile SyncedEventSource mSyncedSource;
+    private final SyncedEventSource.Listener mSyncedListener = new SyncedEventSource.Listener() {
+        @Override
+        public void onSyncedEventsChanged() {
+            requestLoad();
+        }
+    };
+
+    private final HandlerThread mLoaderThread;
+    private final Handler mLoaderHandler;
+    private final Handler mMainHandler;
+
+    // the snapshot currently visible to the renderer, swapped atomically once a load completes
+    private final AtomicReference<EventSnapshot> mSnapshot = new AtomicReference<>(EventSnapshot.EMPTY);
+
+    // coalesces refresh requests that come in while one is still queued
+    private final AtomicBoolean mRefreshPending = new AtomicBoolean(false);
+
+    // set when the provider signals a change, or a full query is requested explicitly
+    private final AtomicBoolean mProviderDirty = new AtomicBoolean(true);
+
+    // the prefetched events and the end of the span they were queried for, only touched on the loader thread
+    private final EventRing mEvents = new EventRing(32);
+    private long mFetchedUntilMillis;
+
+    // whether a full query ever succeeded, only then is there a prefetched span to extend, only touched on the loader thread
+    private boolean mFullyQueried;
+
+    // the first moment at which the published snapshot may become stale: an event entering
+    // the window, starting or ending, or the window getting close to the end of the prefetched span
+    private volatile long mNextRefreshAtMillis;
+
+    // after a failed query, the time before which it isn't repeated unless a change is signalled, 0 when none failed
+    private volatile long mRetryAtMillis;
+    private long mRetryDelayMillis = RETRY_MIN_DELAY_MILLIS;
+
+    private final ContentObserver mCalendarObserver;
+
+    private final Runnable mRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mRefreshPending.set(false);
+            refresh();
+        }
+    };
+
+    // the single wakeup armed for the next boundary, so the snapshot changes when the dial does instead of on the
+    // next time tick. the handler's clock stops in deep sleep, refreshIfNeeded() catches a boundary missed that way
+    private final Runnable mBoundaryRunnable = new Runnable() {
+        @Override
+        public void run() {
+            RenderStats.count(RenderStats.COUNT_BOUNDARY_REFRESHES);
+            scheduleRefresh();
+        }
+    };
+
+    public CalendarEventLoader(Context context, Listener listener) {
+        this(context, null, new EventSnapshotFile(new File(context.getNoBackupFilesDir(), SNAPSHOT_FILE_NAME)), listener);
+
+        // earlier versions kept it in the files directory, which gets backed up
+        new File(context.getFilesDir(), SNAPSHOT_FILE_NAME).delete();
+    }
+
+    /**
+     * @param eventSource the source to load the events from, or null to query the calendar provider
+     */
+    public CalendarEventLoader(Context context, EventSource eventSource, Listener listener) {
+        this(context, eventSource, null, listener);
+    }
+
+    /**
+     * @param eventSource  the source to load the events from, or null to query the calendar provider
+     * @param snapshotFile where the events are saved and restored from, or null to always start empty
+     */
+    public CalendarEventLoader(Context context, EventSource eventSource, EventSnapshotFile snapshotFile, Listener listener) {
+        this.mContext = context.getApplicationContext() != null ? context.getApplicationContext() : context;
+        this.mListener = listener;
+        this.mSnapshotFile = snapshotFile;
+        this.mEventSource = eventSource != null ? eventSource : new EventSource() {
+            @NonNull
+            @Override
+            public EventStore query(long beginMillis, long endMillis) {
+                return CalendarEvent.allEvents(mContext, beginMillis, endMillis, mEventFilter);
+            }
+        };
+
+        // before the loader thread starts, so it sees the restored events without any locking
+        if (mSnapshotFile != null)
+            restore();
+
+        mLoaderThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mLoaderThread.start();
+        mLoaderHandler = new Handler(mLoaderThread.getLooper());
+        mMainHandler = new Handler(Looper.getMainLooper());
+
+        // the observer gets its callbacks on the loader thread
+        mCalendarObserver = new ContentObserver(mLoaderHandler) {
+            @Override
+            public void onChange(boolean selfChange) {
+                mProviderDirty.set(true);
+                scheduleRefresh();
+            }
+        };
+        mContext.getContentResolver().registerContentObserver(WearableCalendarContract.CONTENT_URI, true, mCalendarObserver);
+    }
+
+    /**
+     * Replaces the system time, e.g. to load the events of a simulated day. Takes effect on the next refresh.
+     */
+    public void setClock(@NonNull Clock clock) {
+        this.mClock = clock;
+    }
+
+    /**
+     * Replaces the filter of the provider query and of the synced events, and queries the events again
+     */
+    public void setEventFilter(@NonNull EventFilter filter) {
+        this.mEventFilter = filter;
+        SyncedEventSource synced = mSyncedSource;
+        if (synced != null)
+            synced.setEventFilter(filter);
+        requestLoad();
+    }
+
+    /**
+     * Loads the events from the synced source as soon as it has any, instead of the source
+     *
+     * @param source the events synced from the phone, or null to only use the source
+     */
+    public void setSyncedSource(@Nullable SyncedEventSource source) {
+        SyncedEventSource previous = mSyncedSource;
+        if (previous != null)
+            previous.setListener(null);
+
+        mSyncedSource = source;
+        if (source != null) {
+            source.setEventFilter(mEventFilter);
+            source.setListener(mSyncedListener);
+        }
+        requestLoad();
+    }
+
+    /**
+     * @return the last published snapshot, never null
+     */
+    @NonNull
+    public EventSnapshot getSnapshot() {
+        return mSnapshot.get();
+    }
+
+    /**
+     * Schedules a full query of the calendar provider
+     */
+    public void requestLoad() {
+        mProviderDirty.set(true);
+        scheduleRefresh();
+    }
+
+    /**
+     * Schedules a refresh only when the published snapshot may be stale, cheap enough to call on every time tick
+     */
+    public void refreshIfNeeded() {
+        long now = mClock.currentTimeMillis();
+        if ((mProviderDirty.get() && now >= mRetryAtMillis) || now >= mNextRefreshAtMillis)
+            scheduleRefresh();
+    }
+
+    /**
+     * Stops the loader thread, no snapshots will be published after this call
+     */
+    public void quit() {
+        mContext.getContentResolver().unregisterContentObserver(mCalendarObserver);
+        SyncedEventSource synced = mSyncedSource;
+        if (synced != null)
+            synced.setListener(null);
+        mLoaderHandler.removeCallbacks(mRefreshRunnable);
+        mLoaderHandler.removeCallbacks(mBoundaryRunnable);
+        mMainHandler.removeCallbacksAndMessages(null);
+        mLoaderThread.quit();
+    }
+
+    private void scheduleRefresh() {
+        if (mRefreshPending.compareAndSet(false, true))
+            mLoaderHandler.post(mRefreshRunnable);
+    }
+
+    // runs on the loader thread
+    private void refresh() {
+        long now = mClock.currentTimeMillis();
+        EventSnapshot previous = mSnapshot.get();
+        long prefetchUntil = now + PREFETCH_LENGTH_MILLIS;
+        long windowEnd = now + WINDOW_LENGTH_MILLIS;
+        EventStore events;
+
+        // cleared before the query, so a change signalled while it runs queries again
+        if (mProviderDirty.getAndSet(false) || !mFullyQueried) {
+            RenderStats.count(RenderStats.COUNT_QUERIES);
+            EventStore queried = query(now, prefetchUntil);
+            if (queried == null) {
+                // the change is still unseen, the retry queries everything again
+                mProviderDirty.set(true);
+                retryLater(now);
+                wakeUpAt(mRetryAtMillis, now);
+                return;
+            }
+
+            mFullyQueried = true;
+            mEvents.clear();
+            mEvents.appendAfter(queried, Long.MIN_VALUE);
+            mFetchedUntilMillis = prefetchUntil;
+            save(now);
+
+            // an unchanged query keeps the previous store, so nothing gets laid out again
+            EventStore window = mEvents.copyWindow(now, windowEnd);
+            events = window.contentEquals(previous.events) ? previous.events : window;
+        } else {
+            // nothing new can have appeared in the prefetched span, only drop the events that have ended
+            RenderStats.count(RenderStats.COUNT_PRUNES);
+            mEvents.expire(now);
+
+            if (windowEnd >= mFetchedUntilMillis) {
+                // the window reached the end of the prefetched span, only the span behind it is new
+                RenderStats.count(RenderStats.COUNT_RANGE_QUERIES);
+                EventStore queried = query(mFetchedUntilMillis, prefetchUntil);
+                if (queried != null) {
+                    mEvents.appendAfter(queried, mFetchedUntilMillis);
+                    mFetchedUntilMillis = prefetchUntil;
+                    save(now);
+                } else {
+                    retryLater(now);
+                }
+            }
+
+            // the contents of the instances can't have changed without the provider signalling it
+            events = mEvents.windowEquals(previous.events, now, windowEnd) ? previous.events : mEvents.copyWindow(now, windowEnd);
+        }
+
+        int nextEvent = events.findNextEvent(now);
+        wakeUpAt(nextBoundaryAfter(events, now), now);
+
+        if (events == previous.events && nextEvent == previous.nextEvent)
+            return;
+
+        final EventSnapshot snapshot = new EventSnapshot(previous.version + 1, now, events, nextEvent);
+        mSnapshot.set(snapshot);
+        RenderStats.count(RenderStats.COUNT_SNAPSHOTS);
+
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                mListener.onSnapshotPublished(snapshot);
+            }
+        });
+    }
+
+    /**
+     * @return the first moment after now at which the window changes: an event in it starting or ending, the next
+     * event entering it at its far edge, or the window getting close to the end of the prefetched span, but not
+     * before the retry when extending the span failed
+     */
+    private long nextBoundaryAfter(EventStore window, long now) {
+        long next = Math.min(window.nextBoundaryAfter(now), Math.max(mFetchedUntilMillis - WINDOW_LENGTH_MILLIS, mRetryAtMillis));
+        long entering = mEvents.findStartAtOrAfter(now + WINDOW_LENGTH_MILLIS);
+        if (entering != Long.MAX_VALUE)
+            next = Math.min(next, entering - WINDOW_LENGTH_MILLIS);
+        return Math.max(next, now + 1);
+    }
+
+    // runs on the loader thread, arms the single wakeup, always in the future so a failing source isn't polled
+    private void wakeUpAt(long atMillis, long now) {
+        mNextRefreshAtMillis = atMillis;
+        mLoaderHandler.removeCallbacks(mBoundaryRunnable);
+        mLoaderHandler.postDelayed(mBoundaryRunnable, atMillis - now);
+    }
+
+    // runs on the loader thread, the failed query is repeated after the delay, or earlier when a change is signalled
+    private void retryLater(long now) {
+        mRetryAtMillis = now + mRetryDelayMillis;
+        mRetryDelayMillis = Math.min(mRetryDelayMillis * 2, RETRY_MAX_DELAY_MILLIS);
+    }
+
+    // runs on the constructing thread, before the loader thread starts
+    private void restore() {
+        EventSnapshotFile.Saved saved = mSnapshotFile.read();
+        long now = mClock.currentTimeMillis();
+        if (saved == null || saved.fetchedUntilMillis <= now)
+            return;
+
+        // the provider stays dirty, the first refresh queries everything and replaces these
+        mEvents.appendAfter(saved.events, Long.MIN_VALUE);
+        mEvents.expire(now);
+        mFetchedUntilMillis = saved.fetchedUntilMillis;
+
+        EventStore events = mEvents.copyWindow(now, now + WINDOW_LENGTH_MILLIS);
+        mSnapshot.set(new EventSnapshot(1, saved.savedAtMillis, events, events.findNextEvent(now)));
+        RenderStats.count(RenderStats.COUNT_RESTORED_SNAPSHOTS);
+    }
+
+    // runs on the loader thread
+    private void save(long now) {
+        if (mSnapshotFile != null)
+            mSnapshotFile.write(mEvents.copyWindow(Long.MIN_VALUE, Long.MAX_VALUE), now, mFetchedUntilMillis);
+    }
+
+    // runs on the loader thread, returns null when the query failed
+    private EventStore query(long beginMillis, long endMillis) {
+        long start = RenderStats.startTimer();
+        SyncedEventSource synced = mSyncedSource;
+        try {
+            EventStore events = synced != null && synced.hasEvents()
+                    ? synced.query(beginMillis, endMillis)
+                    : mEventSource.query(beginMillis, endMillis);
+            mRetryAtMillis = 0;
+            mRetryDelayMillis = RETRY_MIN_DELAY_MILLIS;
+            return events;
+        } catch (RuntimeException e) {
+            // e.g. a SecurityException when the calendar permission is missing, keep showing the last snapshot
+            Log.w(TAG, "loading calendar events failed", e);
+            return null;
+        } finally {
+            RenderStats.stopTimer(RenderStats.TIMER_FETCH_EVENTS, start);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package pie.watchface;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.Shader;
+import android.graphics.SweepGradient;
+import android.graphics.Typeface;
+
+/**
+ * Draws to an Android {@link Canvas}. Every brush gets its own paint and every gradient its own shader,
+ * both are cached on the brush and gradient themselves, so drawing does not allocate.
+ */
+public class CanvasRenderTarget implements RenderTarget {
+
+    private Canvas mCanvas;
+    private int mWidth;
+    private int mHeight;
+
+    private final RectF mOval = new RectF();
+    private final Path mTextPath = new Path();
+    private final Matrix mShaderMatrix = new Matrix();
+    private final Paint mLayerPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    public CanvasRenderTarget() {
+    }
+
+    public CanvasRenderTarget(Canvas canvas, int width, int height) {
+        setCanvas(canvas, width, height);
+    }
+
+    public void setCanvas(Canvas canvas, int width, int height) {
+        this.mCanvas = canvas;
+        this.mWidth = width;
+        this.mHeight = height;
+    }
+
+    public Canvas getCanvas() {
+        return mCanvas;
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public void clear(int color) {
+        mCanvas.drawColor(color);
+    }
+
+    @Override
+    public void drawArc(float left, float top, float right, float bottom, float startAngle, float sweepAngle, Brush brush) {
+        mOval.set(left, top, right, bottom);
+        mCanvas.drawArc(mOval, startAngle, sweepAngle, true, paintFor(brush));
+    }
+
+    @Override
+    public void drawLine(float startX, float startY, float stopX, float stopY, Brush brush) {
+        mCanvas.drawLine(startX, startY, stopX, stopY, paintFor(brush));
+    }
+
+    @Override
+    public void drawCircle(float centerX, float centerY, float radius, Brush brush) {
+        mCanvas.drawCircle(centerX, centerY, radius, paintFor(brush));
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Brush brush) {
+        mCanvas.drawRect(left, top, right, bottom, paintFor(brush));
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top) {
+        mCanvas.drawBitmap(bitmap, left, top, null);
+    }
+
+    @Override
+    public void drawTextOnLine(String text, float startX, float startY, float stopX, float stopY, float hOffset, float vOffset, Brush brush) {
+        mTextPath.rewind();
+        mTextPath.moveTo(startX, startY);
+        mTextPath.lineTo(stopX, stopY);
+        mCanvas.drawTextOnPath(text, mTextPath, hOffset, vOffset, paintFor(brush));
+    }
+
+    @Override
+    public float measureText(String text, Brush brush) {
+        return paintFor(brush).measureText(text);
+    }
+
+    @Override
+    public float getTextAscent(Brush brush) {
+        return -paintFor(brush).ascent();
+    }
+
+    @Override
+    public float getTextDescent(Brush brush) {
+        return paintFor(brush).descent();
+    }
+
+    @Override
+    public Layer createLayer(int width, int height, int format) {
+        return new BitmapLayer(width, height, format);
+    }
+
+    @Override
+    public void drawLayer(Layer layer, float left, float top) {
+        mCanvas.drawBitmap(((BitmapLayer) layer).mBitmap, left, top, null);
+    }
+
+    @Override
+    public void drawLayerOnLine(Layer layer, float startX, float startY, float stopX, float stopY, float x, float y) {
+        int saveCount = mCanvas.save();
+        mCanvas.translate(startX, startY);
+        mCanvas.rotate((float) Math.toDegrees(Math.atan2(stopY - startY, stopX - startX)));
+        mCanvas.drawBitmap(((BitmapLayer) layer).mBitmap, x, y, mLayerPaint);
+        mCanvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * @return the paint for the brush, only rebuilt when the brush generation changed
+     */
+    private Paint paintFor(Brush brush) {
+        Paint paint = brush.nativeBrush instanceof Paint ? (Paint) brush.nativeBrush : null;
+
+        if (paint == null || brush.nativeGeneration != brush.getGeneration()) {
+            paint = new Paint();
+            paint.setAntiAlias(brush.isAntiAlias());
+            paint.setStyle(brush.isStroke() ? Paint.Style.STROKE : Paint.Style.FILL);
+            paint.setStrokeCap(brush.isRoundCap() ? Paint.Cap.ROUND : Paint.Cap.BUTT);
+            paint.setStrokeWidth(brush.getStrokeWidth());
+            paint.setTextSize(brush.getTextSize());
+            if (brush.getFontFamily() != null || brush.getFontStyle() != Brush.FONT_NORMAL)
+                paint.setTypeface(brush.getFontFamily() != null
+                        ? Typeface.create(brush.getFontFamily(), brush.getFontStyle())
+                        : Typeface.create(Typeface.DEFAULT, brush.getFontStyle()));
+            if (brush.getShadowRadius() > 0)
+                paint.setShadowLayer(brush.getShadowRadius(), brush.getShadowDx(), brush.getShadowDy(), brush.getShadowColor());
+
+            brush.nativeBrush = paint;
+            brush.nativeGeneration = brush.getGeneration();
+        }
+
+        paint.setColor(brush.getColor());
+        paint.setTextAlign(toPaintAlign(brush.getTextAlign()));
+        paint.setShader(shaderFor(brush.getGradient(), brush.getGradientRotation()));
+
+        return paint;
+    }
+
+    private Shader shaderFor(Gradient gradient, float rotation) {
+        if (gradient == null)
+            return null;
+
+        if (!(gradient.nativeGradient instanceof Shader)) {
+            if (gradient.type == Gradient.SWEEP) {
+                gradient.nativeGradient = new SweepGradient(gradient.x0, gradient.y0, gradient.colors, gradient.positions);
+            } else {
+                gradient.nativeGradient = new LinearGradient(gradient.x0, gradient.y0, gradient.x1, gradient.y1,
+                        gradient.colors, gradient.positions, gradient.mirror ? Shader.TileMode.MIRROR : Shader.TileMode.CLAMP);
+            }
+            gradient.nativeRotation = 0;
+        }
+
+        Shader shader = (Shader) gradient.nativeGradient;
+
+        // a sweep gradient always starts at 3 o'clock, so it gets rotated to its start angle.
+        // the local matrix is copied by the shader, so rotating it every frame doesn't allocate
+        float degrees = gradient.startAngle + rotation;
+        if (degrees != gradient.nativeRotation) {
+            mShaderMatrix.setRotate(degrees, gradient.x0, gradient.y0);
+            shader.setLocalMatrix(mShaderMatrix);
+            gradient.nativeRotation = degrees;
+        }
+
+        return shader;
+    }
+
+    private static Paint.Align toPaintAlign(Brush.Align align) {
+        switch (align) {
+            case CENTER:
+                return Paint.Align.CENTER;
+            case RIGHT:
+                return Paint.Align.RIGHT;
+            default:
+                return Paint.Align.LEFT;
+        }
+    }
+
+    private static class BitmapLayer implements Layer {
+
+        private final Bitmap mBitmap;
+        private final boolean mOpaque;
+        private final CanvasRenderTarget mTarget;
+
+        BitmapLayer(int width, int height, int format) {
+            this.mBitmap = Bitmap.createBitmap(width, height, format == LAYER_OPAQUE_LOW_DEPTH ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888);
+            this.mOpaque = format != LAYER_TRANSLUCENT;
+            // lets an opaque layer be blitted without blending
+            if (mOpaque)
+                mBitmap.setHasAlpha(false);
+            this.mTarget = new CanvasRenderTarget(new Canvas(mBitmap), width, height);
+        }
+
+        @Override
+        public int getWidth() {
+            return mBitmap.getWidth();
+        }
+
+        @Override
+        public int getHeight() {
+            return mBitmap.getHeight();
+        }
+
+        @Override
+        public RenderTarget getTarget() {
+            return mTarget;
+        }
+
+        @Override
+        public void clear() {
+            mBitmap.eraseColor(mOpaque ? Color.BLACK : Color.TRANSPARENT);
+        }
+
+        @Override
+        public void release() {
+            mTarget.getCanvas().setBitmap(null);
+            mBitmap.recycle();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package pie.watchface;
+
+import android.graphics.Point;
+
+/**
+ * The coordinates of every half degree position on a circle with a fixed radius and center, precomputed
+ * so that projecting dial angles onto the watch face is a table lookup. Angles that don't fall exactly on
+ * a dial position are calculated the regular way.
+ */
+public class CircleProjection {
+
+    public final double radius;
+    public final float centerX;
+    public final float centerY;
+
+    private final int[] mX = new int[PieUtils.DIAL_POSITIONS];
+    private final int[] mY = new int[PieUtils.DIAL_POSITIONS];
+
+    public CircleProjection(double radius, float centerX, float centerY) {
+        this.radius = radius;
+        this.centerX = centerX;
+        this.centerY = centerY;
+
+        for (int i = 0; i < PieUtils.DIAL_POSITIONS; i++) {
+            long packed = PieUtils.getPackedPointOnTheCircleCircumference(radius, i * 0.5, centerX, centerY);
+            mX[i] = PieUtils.unpackX(packed);
+            mY[i] = PieUtils.unpackY(packed);
+        }
+    }
+
+    public boolean matches(double radius, float centerX, float centerY) {
+        return this.radius == radius && this.centerX == centerX && this.centerY == centerY;
+    }
+
+    /**
+     * Writes the point on the circumference for the given angle into out
+     *
+     * @return the given point
+     */
+    public Point project(float angle, Point out) {
+        int position = PieUtils.getDialPosition(angle);
+        if (position < 0)
+            return PieUtils.getPointOnTheCircleCircumference(radius, angle, centerX, centerY, out);
+
+        out.set(mX[position], mY[position]);
+        return out;
+    }
+
+    /**
+     * @return the point on the circumference for the given angle, packed as in {@link PieUtils#packPoint(int, int)}
+     */
+    public long projectPacked(float angle) {
+        int position = PieUtils.getDialPosition(angle);
+        if (position < 0)
+            return PieUtils.getPackedPointOnTheCircleCircumference(radius, angle, centerX, centerY);
+
+        return PieUtils.packPoint(mX[position], mY[position]);
+    }
+}
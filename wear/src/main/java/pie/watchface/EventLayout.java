@@ -0,0 +1,248 @@
+package pie.watchface;
+
+import android.graphics.Color;
+import android.graphics.Point;
+import android.graphics.PointF;
+
+/**
+ * The precomputed render geometry of a single event of an {@link EventStore}: its arc, edge points, text lines,
+ * text offsets and gradient. A layout is only rebuilt when the event, the watch face bounds, the ambient
+ * mode or the "current event" clipping changes, so drawing it every frame does not allocate.
+ */
+public class EventLayout {
+
+    // the event as it was when the layout got built
+    public EventStore events;
+    public int index;
+    public String title;
+    public int color;
+
+    // start and end of the piece in local epoch minutes
+    public long startMinutes;
+    public long endMinutes;
+
+    // the local epoch minute the piece got clipped at when it is the ongoing event, -1 otherwise
+    public long clippedAtMinutes = -1;
+
+    // the pie piece, overlapping events get a share of the radius by their lane, see LaneAllocator
+    public int lane;
+    public int laneCount;
+    public float radiusScale;
+    public float arcInset;
+    public float arcStartAngle;
+    public float arcSweepAngle;
+    public final Point startPoint = new Point();
+    public final Point endPoint = new Point();
+
+    // title text, drawn along the line from start to stop
+    public final PointF titleStart = new PointF();
+    public final PointF titleStop = new PointF();
+    public Brush.Align titleAlign;
+    public float titleHOffset;
+    public float titleVOffset;
+    public Gradient titleGradient;
+    public boolean drawTitle;
+
+    // time left text, drawn along the line from start to stop
+    public final PointF timeStart = new PointF();
+    public final PointF timeStop = new PointF();
+    public Brush.Align timeAlign;
+    public float timeHOffset;
+    public float timeVOffset;
+    public boolean canDrawTime;
+
+    // the "in Xh" text, regenerated only when the minute changes
+    private String mInTimeText;
+    private long mInTimeMinutes = -1;
+
+    /**
+     * @return whether this layout is out of date because the ongoing event clipping changed since it was built
+     */
+    public boolean needsClippingUpdate(long nowLocalMinutes) {
+        return clippedAtMinutes != (isOngoing(nowLocalMinutes) ? nowLocalMinutes : -1);
+    }
+
+    private boolean isOngoing(long nowLocalMinutes) {
+        return nowLocalMinutes > startMinutes && nowLocalMinutes < endMinutes;
+    }
+
+    /**
+     * @param nowEpochMinutes the current time, see {@link TimeEngine#getEpochMinutes(long)}
+     */
+    public String getInTimeText(long nowEpochMinutes) {
+        if (mInTimeMinutes != nowEpochMinutes) {
+            mInTimeText = events.getInTimeString(index, nowEpochMinutes);
+            mInTimeMinutes = nowEpochMinutes;
+        }
+        return mInTimeText;
+    }
+
+    /**
+     * (Re)builds the layout for the given event
+     *
+     * @param events
+     * @param index the index of the event in the store
+     * @param nowLocalMinutes the current time in local epoch minutes, see {@link TimeEngine#getLocalEpochMinutes(long)}
+     * @param ambientMode
+     * @param isNextEvent whether this is the next upcoming event, which gets the time left text
+     * @param config the dimensions of the watch face
+     * @param target the target used for measuring the title
+     * @param textBrush the brush used for measuring the title
+     */
+    public void layout(EventStore events, int index, long nowLocalMinutes, boolean ambientMode,
+                       boolean isNextEvent, RenderConfig config, RenderTarget target, Brush textBrush) {
+        PointF center = config.center;
+        CircleProjection dial = config.dial;
+        this.events = events;
+        this.index = index;
+        this.title = events.getTitle(index);
+        this.color = events.getColor(index);
+        this.startMinutes = events.getStartLocalMinutes(index);
+        this.endMinutes = events.getEndLocalMinutes(index);
+        this.mInTimeMinutes = -1;
+
+        float eventStartAngle = PieUtils.getAngleForMinutes((int) (startMinutes % TimeEngine.MINUTES_PER_DIAL));
+        float eventDuration = events.getDurationDegrees(index);
+
+        // the outer lane gets the whole radius, every further lane ends that much closer to the center
+        lane = events.getLane(index);
+        laneCount = events.getLaneCount(index);
+        radiusScale = (laneCount - lane) / (float) laneCount;
+        arcInset = (float) (dial.radius * (1 - radiusScale));
+
+        projectScaled(dial, events.getEndAngle(index), center, endPoint);
+
+        if (isOngoing(nowLocalMinutes)) {
+            // we are on this event
+            float nowAngle = PieUtils.getAngleForMinutes((int) (nowLocalMinutes % TimeEngine.MINUTES_PER_DIAL));
+            eventStartAngle = nowAngle;
+            eventDuration = PieUtils.getDegreesForMinutes((int) Math.min(TimeEngine.MINUTES_PER_DIAL, endMinutes - nowLocalMinutes));
+            projectScaled(dial, nowAngle, center, startPoint);
+            clippedAtMinutes = nowLocalMinutes;
+        } else {
+            // normal future event
+            projectScaled(dial, eventStartAngle, center, startPoint);
+            clippedAtMinutes = -1;
+        }
+
+        arcStartAngle = eventStartAngle;
+        arcSweepAngle = eventDuration;
+
+        // variable fading for text when pie piece gets small
+        float fading_threshold = 0.8f;
+        fading_threshold = Math.min(fading_threshold, (fading_threshold / 30) * eventDuration);
+        float color_threshold = 0.6f;
+        color_threshold = Math.min(color_threshold, (color_threshold / 30) * eventDuration);
+
+        if (ambientMode) {
+            color_threshold = 0.7f;
+            fading_threshold = 0.9f;
+        }
+
+        float[] positions = {color_threshold, fading_threshold, fading_threshold};
+        int[] colors = {Color.WHITE, ambientMode ? Color.TRANSPARENT : color, Color.TRANSPARENT};
+
+        Point edgePoint;
+
+        if (events.drawsTitleOnStartingEdge(index)) {
+            edgePoint = startPoint;
+
+            titleGradient = Gradient.linear(edgePoint.x, edgePoint.y, center.x, center.y, colors, positions, true);
+
+            float startAngle = events.getStartAngle(index);
+            if ((startAngle >= 270 && startAngle <= 360) || (startAngle >= 0 && startAngle < 90)) {
+                // drawing text on the starting edge when you're in the first half of circle
+                titleAlign = Brush.Align.RIGHT;
+                titleStart.set(center.x, center.y);
+                titleStop.set(edgePoint.x, edgePoint.y);
+                titleVOffset = config.textOffsetBelow;
+                titleHOffset = -config.textOffsetAlong;
+
+                if (target.measureText(title, textBrush) > config.longTitleWidth)
+                    layoutLongTitle(config, edgePoint, colors);
+
+                // drawing time text on the ending edge when you're in the first half of circle
+                timeAlign = Brush.Align.RIGHT;
+                timeStart.set(center.x, center.y);
+                timeStop.set(endPoint.x, endPoint.y);
+
+                timeVOffset = -config.textOffsetAbove;
+                timeHOffset = -config.textOffsetAlong;
+            } else {
+                // drawing text on the starting edge when you're in the second half of circle
+                titleAlign = Brush.Align.LEFT;
+                titleStart.set(edgePoint.x, edgePoint.y);
+                titleStop.set(center.x, center.y);
+                titleVOffset = -config.textOffsetAbove;
+                titleHOffset = config.textOffsetAlong;
+
+                // drawing time text on the ending edge when you're in the second half of circle
+                timeAlign = Brush.Align.LEFT;
+                timeStart.set(endPoint.x, endPoint.y);
+                timeStop.set(center.x, center.y);
+
+                timeVOffset = config.textOffsetBelow;
+                timeHOffset = config.timeOffsetAlong;
+            }
+        } else {
+            edgePoint = endPoint;
+
+            titleGradient = Gradient.linear(edgePoint.x, edgePoint.y, center.x, center.y, colors, positions, true);
+
+            float endAngle = events.getEndAngle(index);
+            if (endAngle >= 90 && endAngle < 270) {
+                // drawing text on the ending edge when you're in the second half of circle
+                titleStart.set(edgePoint.x, edgePoint.y);
+                titleStop.set(center.x, center.y);
+                titleAlign = Brush.Align.LEFT;
+                titleVOffset = config.textOffsetBelow;
+                titleHOffset = config.textOffsetAlong;
+
+                // drawing time text on the starting edge when you're in the second half of circle
+                timeAlign = Brush.Align.RIGHT;
+                timeStart.set(center.x, center.y);
+                timeStop.set(startPoint.x, startPoint.y);
+
+                timeVOffset = config.textOffsetBelow;
+                timeHOffset = config.textOffsetAlong;
+            } else {
+                // drawing text on the ending edge when you're in the first half of circle
+                titleStart.set(center.x, center.y);
+                titleStop.set(edgePoint.x, edgePoint.y);
+                titleAlign = Brush.Align.RIGHT;
+                titleVOffset = -config.textOffsetAbove;
+                titleHOffset = -config.textOffsetAlong;
+
+                if (target.measureText(title, textBrush) > config.longTitleWidth)
+                    layoutLongTitle(config, edgePoint, colors);
+
+                // drawing time text on the starting edge when you're in the first half of circle
+                timeAlign = Brush.Align.RIGHT;
+                timeStart.set(center.x, center.y);
+                timeStop.set(startPoint.x, startPoint.y);
+
+                timeVOffset = config.textOffsetBelow;
+                timeHOffset = -config.timeOffsetAlong;
+            }
+        }
+
+        drawTitle = ambientMode || eventDuration > PieWatchFace.MIN_DEG_FOR_TITLE;
+        canDrawTime = !ambientMode && isNextEvent && eventDuration > (PieWatchFace.MIN_DEG_FOR_TITLE * 2);
+    }
+
+    private void projectScaled(CircleProjection dial, float angle, PointF center, Point out) {
+        dial.project(angle, out);
+        if (radiusScale < 1)
+            out.set(Math.round(center.x + (out.x - center.x) * radiusScale), Math.round(center.y + (out.y - center.y) * radiusScale));
+    }
+
+    // long titles start further away from the center, with an inverted text gradient
+    private void layoutLongTitle(RenderConfig config, Point edgePoint, int[] colors) {
+        PointF center = config.center;
+        titleAlign = Brush.Align.LEFT;
+        titleHOffset = config.longTitleOffsetAlong;
+
+        float[] positions = new float[]{0.8f, 1.f, 1.f};
+        titleGradient = Gradient.linear(center.x, center.y, edgePoint.x, edgePoint.y, colors, positions, true);
+    }
+}
@@ -0,0 +1,160 @@
+package pie.watchface;
+
+import android.app.ActivityManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The events and decoded assets of the process, shared by every engine, e.g. the active watch face and a preview
+ * in the picker. It owns the single loader, with its filter and the events synced from the phone, and the single
+ * background image decoder, so the calendar is queried and the image decoded once per change no matter how many
+ * engines are alive. The snapshots it hands out are immutable and published atomically by the loader.
+ * <p>
+ * It is also the single receiver of time zone and system time changes, it refreshes the time engine and tells
+ * the engines, which only lay out again.
+ * <p>
+ * Engines acquire the repository when they are created and release it when they are destroyed, the last release
+ * tears it down. Both only happen on the main thread.
+ */
+public class EventRepository {
+
+    public static final String TAG = EventRepository.class.getSimpleName();
+
+    public interface Listener {
+        /**
+         * Called on the main thread when a new snapshot has been published or the background image is ready
+         */
+        void onRepositoryChanged();
+
+        /**
+         * Called on the main thread when the time zone or the system time got changed, after the time engine has
+         * been refreshed, everything laid out in local time has to be laid out again
+         */
+        void onTimeChanged();
+    }
+
+    private static EventRepository sInstance;
+
+    private final Context mContext;
+    private int mReferences;
+    private final CopyOnWriteArrayList<Listener> mListeners = new CopyOnWriteArrayList<>();
+
+    private final CalendarEventLoader mEventLoader;
+    private final BackgroundImage mBackgroundImage;
+
+    // the events synced from the phone
+    private final SyncTransport mSyncTransport;
+    private final SyncedEventSource mSyncedEvents;
+
+    // the user changed the event filter, the listener is only weakly referenced by the preferences
+    private final SharedPreferences mFilterPreferences;
+    private final SharedPreferences.OnSharedPreferenceChangeListener mFilterListener = new SharedPreferences.OnSharedPreferenceChangeListener() {
+        @Override
+        public void onSharedPreferenceChanged(SharedPreferences preferences, String key) {
+            mEventLoader.setEventFilter(EventFilter.fromPreferences(preferences));
+        }
+    };
+
+    // the time zone or the system time got changed, the window has to be loaded again, once for all engines
+    private final BroadcastReceiver mTimeChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            TimeEngine.getInstance().refresh();
+            mEventLoader.requestLoad();
+            for (Listener listener : mListeners)
+                listener.onTimeChanged();
+        }
+    };
+
+    /**
+     * @return the repository, created on the first call, call {@link #release()} once done with it
+     */
+    public static EventRepository acquire(Context context) {
+        if (sInstance == null)
+            sInstance = new EventRepository(context.getApplicationContext());
+
+        sInstance.mReferences++;
+        return sInstance;
+    }
+
+    private EventRepository(Context context) {
+        this.mContext = context;
+
+        mEventLoader = new CalendarEventLoader(context, new CalendarEventLoader.Listener() {
+            @Override
+            public void onSnapshotPublished(@NonNull EventSnapshot snapshot) {
+                notifyChanged();
+            }
+        });
+
+        mBackgroundImage = new BackgroundImage(context, R.drawable.bg);
+        mBackgroundImage.setListener(new BackgroundImage.Listener() {
+            @Override
+            public void onImageReady() {
+                notifyChanged();
+            }
+        });
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        mBackgroundImage.setLowMemory(activityManager.isLowRamDevice());
+
+        mFilterPreferences = context.getSharedPreferences(EventFilter.PREFERENCES_NAME, Context.MODE_PRIVATE);
+        mFilterPreferences.registerOnSharedPreferenceChangeListener(mFilterListener);
+        mEventLoader.setEventFilter(EventFilter.fromPreferences(mFilterPreferences));
+
+        mSyncTransport = new WearableSyncTransport(context);
+        mSyncedEvents = new SyncedEventSource(mSyncTransport);
+        mEventLoader.setSyncedSource(mSyncedEvents);
+
+        IntentFilter filter = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+        filter.addAction(Intent.ACTION_TIME_CHANGED);
+        context.registerReceiver(mTimeChangedReceiver, filter);
+        // the zone may have changed while nothing was listening
+        TimeEngine.getInstance().refresh();
+
+        mEventLoader.requestLoad();
+    }
+
+    public CalendarEventLoader getEventLoader() {
+        return mEventLoader;
+    }
+
+    public BackgroundImage getBackgroundImage() {
+        return mBackgroundImage;
+    }
+
+    public void addListener(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Gives up this reference, the last one stops the loader and the decoder and closes the sync
+     */
+    public void release() {
+        if (--mReferences > 0)
+            return;
+
+        sInstance = null;
+        mListeners.clear();
+        mContext.unregisterReceiver(mTimeChangedReceiver);
+        mFilterPreferences.unregisterOnSharedPreferenceChangeListener(mFilterListener);
+        mEventLoader.quit();
+        mBackgroundImage.release();
+        mSyncedEvents.close();
+        mSyncTransport.close();
+    }
+
+    private void notifyChanged() {
+        for (Listener listener : mListeners)
+            listener.onRepositoryChanged();
+    }
+}
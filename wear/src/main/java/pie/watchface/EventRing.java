@@ -0,0 +1,186 @@
+package pie.watchface;
+
+/**
+ * The prefetched events of the loader, in a ring buffer ordered by start time. Events are appended at the
+ * tail as the prefetched span grows and expire from the head once they have ended, so sliding the window
+ * along never moves the events in between.
+ * <p>
+ * Only used on the loader thread, the renderer gets immutable {@link EventStore}s cut out of it.
+ */
+public class EventRing {
+
+    private long[] mIds;
+    private String[] mTitles;
+    private String[] mLocations;
+    private long[] mStartMillis;
+    private long[] mEndMillis;
+    private boolean[] mAllDay;
+    private int[] mColors;
+
+    // the slot of the oldest event, and the number of events
+    private int mHead;
+    private int mSize;
+
+    public EventRing(int capacity) {
+        allocate(Math.max(capacity, 4));
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void clear() {
+        // drop the references, so the strings can be collected
+        for (int i = 0; i < mSize; i++) {
+            int slot = slot(i);
+            mTitles[slot] = null;
+            mLocations[slot] = null;
+        }
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * Appends the events starting after the given time, the events of the store must be sorted and start
+     * no earlier than the events already in the ring
+     *
+     * @param afterMillis events starting at or before this time are skipped, they are already in the ring
+     * @return the number of events appended
+     */
+    public int appendAfter(EventStore events, long afterMillis) {
+        int appended = 0;
+        for (int i = 0; i < events.size(); i++) {
+            if (events.getStartMillis(i) <= afterMillis)
+                continue;
+
+            if (mSize == mIds.length)
+                grow();
+
+            int slot = slot(mSize++);
+            mIds[slot] = events.getId(i);
+            mTitles[slot] = events.getTitle(i);
+            mLocations[slot] = events.getLocation(i);
+            mStartMillis[slot] = events.getStartMillis(i);
+            mEndMillis[slot] = events.getEndMillis(i);
+            mAllDay[slot] = events.isAllDay(i);
+            mColors[slot] = events.getColor(i);
+            appended++;
+        }
+        return appended;
+    }
+
+    /**
+     * Drops the ended events from the head. An event that ended behind one still running stays until that
+     * one has ended too, {@link #copyWindow(long, long)} skips it in the meantime.
+     *
+     * @return the number of events dropped
+     */
+    public int expire(long nowMillis) {
+        int expired = 0;
+        while (mSize > 0 && mEndMillis[mHead] <= nowMillis) {
+            mTitles[mHead] = null;
+            mLocations[mHead] = null;
+            mHead = (mHead + 1) % mIds.length;
+            mSize--;
+            expired++;
+        }
+        return expired;
+    }
+
+    /**
+     * @return the events overlapping the window, sorted by start time
+     */
+    public EventStore copyWindow(long beginMillis, long endMillis) {
+        EventStore.Builder builder = new EventStore.Builder(mSize);
+        for (int i = 0; i < mSize; i++) {
+            int slot = slot(i);
+            if (mStartMillis[slot] >= endMillis)
+                break;
+            if (mEndMillis[slot] <= beginMillis)
+                continue;
+
+            builder.add(mIds[slot], mTitles[slot], mStartMillis[slot], mEndMillis[slot], mLocations[slot], mAllDay[slot], mColors[slot]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return whether the store holds exactly the instances overlapping the window, checked without building a new store
+     */
+    public boolean windowEquals(EventStore store, long beginMillis, long endMillis) {
+        int index = 0;
+        for (int i = 0; i < mSize; i++) {
+            int slot = slot(i);
+            if (mStartMillis[slot] >= endMillis)
+                break;
+            if (mEndMillis[slot] <= beginMillis)
+                continue;
+
+            if (index >= store.size()
+                    || store.getId(index) != mIds[slot]
+                    || store.getStartMillis(index) != mStartMillis[slot]
+                    || store.getEndMillis(index) != mEndMillis[slot])
+                return false;
+            index++;
+        }
+        return index == store.size();
+    }
+
+    /**
+     * @return the start of the first event starting at or after the given time, found by binary search, or
+     * Long.MAX_VALUE if there is none
+     */
+    public long findStartAtOrAfter(long millis) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mStartMillis[slot(middle)] < millis)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low < mSize ? mStartMillis[slot(low)] : Long.MAX_VALUE;
+    }
+
+    private int slot(int index) {
+        int slot = mHead + index;
+        return slot < mIds.length ? slot : slot - mIds.length;
+    }
+
+    private void grow() {
+        long[] ids = mIds;
+        String[] titles = mTitles;
+        String[] locations = mLocations;
+        long[] startMillis = mStartMillis;
+        long[] endMillis = mEndMillis;
+        boolean[] allDay = mAllDay;
+        int[] colors = mColors;
+        int capacity = ids.length;
+
+        allocate(capacity * 2);
+
+        // unwrap the events to the start of the new arrays
+        for (int i = 0; i < mSize; i++) {
+            int slot = (mHead + i) % capacity;
+            mIds[i] = ids[slot];
+            mTitles[i] = titles[slot];
+            mLocations[i] = locations[slot];
+            mStartMillis[i] = startMillis[slot];
+            mEndMillis[i] = endMillis[slot];
+            mAllDay[i] = allDay[slot];
+            mColors[i] = colors[slot];
+        }
+        mHead = 0;
+    }
+
+    private void allocate(int capacity) {
+        mIds = new long[capacity];
+        mTitles = new String[capacity];
+        mLocations = new String[capacity];
+        mStartMillis = new long[capacity];
+        mEndMillis = new long[capacity];
+        mAllDay = new boolean[capacity];
+        mColors = new int[capacity];
+    }
+}
@@ -0,0 +1,37 @@
+package pie.watchface;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Immutable set of calendar events as published by the {@link CalendarEventLoader}.
+ * A snapshot is never modified after it has been built, so the render thread can read it
+ * without any locking while the next one is being prepared in the background.
+ */
+public final class EventSnapshot {
+
+    public static final EventSnapshot EMPTY = new EventSnapshot(0, 0, EventStore.EMPTY, -1);
+
+    // increases by one for every published snapshot
+    public final long version;
+
+    // wall clock time at which the events were queried
+    public final long loadedAtMillis;
+
+    // events sorted by start time
+    @NonNull
+    public final EventStore events;
+
+    // the index of the next upcoming event, -1 if there is none
+    public final int nextEvent;
+
+    public EventSnapshot(long version, long loadedAtMillis, @NonNull EventStore events, int nextEvent) {
+        this.version = version;
+        this.loadedAtMillis = loadedAtMillis;
+        this.events = events;
+        this.nextEvent = nextEvent;
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+}
@@ -0,0 +1,177 @@
+package pie.watchface;
+
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * The prefetched events persisted in a compact binary file, so a new engine has events to draw right away
+ * instead of waiting for the first provider query. The file is read through a memory mapping, a few
+ * kilobytes straight from the page cache, and written to a temporary file that replaces the old one,
+ * so a crash halfway through never leaves a truncated file behind.
+ * <p>
+ * Only the events themselves are stored: everything derived, local minutes, angles and lanes, depends on
+ * the time zone and is rebuilt by the {@link EventStore.Builder} when the file is read.
+ */
+public class EventSnapshotFile {
+
+    public static final String TAG = EventSnapshotFile.class.getSimpleName();
+
+    private static final int MAGIC = 0x50494531; // "PIE1"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // the bytes of an event with empty strings, bounds the count before anything gets allocated for it
+    private static final int MIN_EVENT_BYTES = 8 + 8 + 8 + 1 + 4 + 4 + 4;
+
+    /**
+     * The contents of the file
+     */
+    public static final class Saved {
+        // when the events were written, and the end of the span they were queried for
+        public final long savedAtMillis;
+        public final long fetchedUntilMillis;
+        public final EventStore events;
+
+        Saved(long savedAtMillis, long fetchedUntilMillis, EventStore events) {
+            this.savedAtMillis = savedAtMillis;
+            this.fetchedUntilMillis = fetchedUntilMillis;
+            this.events = events;
+        }
+    }
+
+    private final File mFile;
+
+    public EventSnapshotFile(File file) {
+        this.mFile = file;
+    }
+
+    /**
+     * @return the saved events, or null when there is no file or it can't be read
+     */
+    @Nullable
+    public Saved read() {
+        if (!mFile.exists())
+            return null;
+
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "r");
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+                return null;
+
+            long savedAtMillis = buffer.getLong();
+            long fetchedUntilMillis = buffer.getLong();
+            int count = buffer.getInt();
+            if (count < 0 || count > buffer.remaining() / MIN_EVENT_BYTES)
+                return null;
+
+            EventStore.Builder events = new EventStore.Builder(count);
+            for (int i = 0; i < count; i++) {
+                long id = buffer.getLong();
+                long startMillis = buffer.getLong();
+                long endMillis = buffer.getLong();
+                boolean allDay = buffer.get() != 0;
+                int color = buffer.getInt();
+                String title = getString(buffer);
+                String location = getString(buffer);
+                events.add(id, title, startMillis, endMillis, location, allDay, color);
+            }
+            return new Saved(savedAtMillis, fetchedUntilMillis, events.build());
+        } catch (IOException | BufferUnderflowException e) {
+            // an outdated or damaged file, the next query writes a new one
+            Log.w(TAG, "reading the saved events failed", e);
+            return null;
+        } finally {
+            closeQuietly(file);
+        }
+    }
+
+    /**
+     * Replaces the file with the given events
+     *
+     * @return whether the file has been written
+     */
+    public boolean write(EventStore events, long savedAtMillis, long fetchedUntilMillis) {
+        File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(savedAtMillis);
+            out.writeLong(fetchedUntilMillis);
+            out.writeInt(events.size());
+            for (int i = 0; i < events.size(); i++) {
+                out.writeLong(events.getId(i));
+                out.writeLong(events.getStartMillis(i));
+                out.writeLong(events.getEndMillis(i));
+                out.writeByte(events.isAllDay(i) ? 1 : 0);
+                out.writeInt(events.getColor(i));
+                putString(out, events.getTitle(i));
+                putString(out, events.getLocation(i));
+            }
+            out.close();
+            out = null;
+
+            if (!temp.renameTo(mFile)) {
+                Log.w(TAG, "replacing " + mFile + " failed");
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "writing the events failed", e);
+            return false;
+        } finally {
+            closeQuietly(out);
+            temp.delete();
+        }
+    }
+
+    // strings are stored as their UTF-8 length followed by the bytes, -1 for null
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0)
+            return null;
+        if (length > buffer.remaining())
+            throw new BufferUnderflowException();
+
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package pie.watchface;
+
+import java.util.Arrays;
+
+import pie.watchface.PieWatchFace.Pos;
+
+/**
+ * An immutable, sorted set of calendar events kept in parallel primitive arrays, one slot per event.
+ * Everything the renderer needs, minutes of the day, angles and colors, is computed once when the
+ * store is built, so reading an event is an array lookup that never allocates.
+ * <p>
+ * The store also indexes its timeline: besides the starts, which are sorted, it keeps the latest end up to
+ * every event and all ends in ascending order. Which events are going on, which one is next and when the
+ * next one starts or ends are binary searches, overlapping events included.
+ */
+public final class EventStore {
+
+    public static final EventStore EMPTY = new Builder(0).build();
+
+    private final int mSize;
+
+    private final long[] mIds;
+    private final String[] mTitles;
+    private final String[] mLocations;
+    private final long[] mStartMillis;
+    private final long[] mEndMillis;
+    private final boolean[] mAllDay;
+    private final int[] mColors;
+
+    // derived from the above when the store is built, in local time
+    private final int[] mStartMinutes;
+    private final int[] mEndMinutes;
+    private final long[] mStartLocalMinutes;
+    private final long[] mEndLocalMinutes;
+    private final float[] mStartAngles;
+    private final float[] mEndAngles;
+    private final float[] mDurationDegrees;
+    private final boolean[] mTitleOnStartingEdge;
+
+    // the lanes of overlapping events, see LaneAllocator
+    private final int[] mLanes;
+    private final int[] mLaneCounts;
+
+    // the timeline index: the latest end among the events up to each one, which never decreases, and
+    // all ends sorted
+    private final long[] mMaxEndMillis;
+    private final long[] mSortedEndMillis;
+
+    private EventStore(int size) {
+        mSize = size;
+        mIds = new long[size];
+        mTitles = new String[size];
+        mLocations = new String[size];
+        mStartMillis = new long[size];
+        mEndMillis = new long[size];
+        mAllDay = new boolean[size];
+        mColors = new int[size];
+        mStartMinutes = new int[size];
+        mEndMinutes = new int[size];
+        mStartLocalMinutes = new long[size];
+        mEndLocalMinutes = new long[size];
+        mStartAngles = new float[size];
+        mEndAngles = new float[size];
+        mDurationDegrees = new float[size];
+        mTitleOnStartingEdge = new boolean[size];
+        mLanes = new int[size];
+        mLaneCounts = new int[size];
+        mMaxEndMillis = new long[size];
+        mSortedEndMillis = new long[size];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public long getId(int index) {
+        return mIds[index];
+    }
+
+    public String getTitle(int index) {
+        return mTitles[index];
+    }
+
+    public String getLocation(int index) {
+        return mLocations[index];
+    }
+
+    public long getStartMillis(int index) {
+        return mStartMillis[index];
+    }
+
+    public long getEndMillis(int index) {
+        return mEndMillis[index];
+    }
+
+    public boolean isAllDay(int index) {
+        return mAllDay[index];
+    }
+
+    public int getColor(int index) {
+        return mColors[index];
+    }
+
+    /**
+     * @return the start as minutes of the day
+     */
+    public int getStartMinutes(int index) {
+        return mStartMinutes[index];
+    }
+
+    /**
+     * @return the end as minutes of the day
+     */
+    public int getEndMinutes(int index) {
+        return mEndMinutes[index];
+    }
+
+    /**
+     * @return the start as local minutes since the epoch, see {@link TimeEngine#getLocalEpochMinutes(long)}
+     */
+    public long getStartLocalMinutes(int index) {
+        return mStartLocalMinutes[index];
+    }
+
+    /**
+     * @return the end as local minutes since the epoch, see {@link TimeEngine#getLocalEpochMinutes(long)}
+     */
+    public long getEndLocalMinutes(int index) {
+        return mEndLocalMinutes[index];
+    }
+
+    public float getStartAngle(int index) {
+        return mStartAngles[index];
+    }
+
+    public float getEndAngle(int index) {
+        return mEndAngles[index];
+    }
+
+    public float getDurationDegrees(int index) {
+        return mDurationDegrees[index];
+    }
+
+    public boolean drawsTitleOnStartingEdge(int index) {
+        return mTitleOnStartingEdge[index];
+    }
+
+    /**
+     * @return the lane of the event among the events it overlaps with, 0 is the outer one
+     */
+    public int getLane(int index) {
+        return mLanes[index];
+    }
+
+    /**
+     * @return the number of lanes the group of overlapping events the event belongs to needs, at least 1
+     */
+    public int getLaneCount(int index) {
+        return mLaneCounts[index];
+    }
+
+    /**
+     * @param nowEpochMinutes the current time, see {@link TimeEngine#getEpochMinutes(long)}
+     */
+    public String getInTimeString(int index, long nowEpochMinutes) {
+        int mins = (int) (TimeEngine.getEpochMinutes(mStartMillis[index]) - nowEpochMinutes);
+        if (mins > 60) return "in " + (mins / 60) + "h";
+        else return "in " + mins + "m";
+    }
+
+    /**
+     * @return the index of the event with the given instance id, or -1
+     */
+    public int indexOfId(long id) {
+        for (int i = 0; i < mSize; i++) {
+            if (mIds[i] == id)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the next upcoming event, the first one starting after now, or -1 if there is none
+     */
+    public int findNextEvent(long nowMillis) {
+        int next = findFirstStartingAfter(nowMillis);
+        return next < mSize ? next : -1;
+    }
+
+    /**
+     * @return the first moment after the given time at which an event starts or ends, or Long.MAX_VALUE
+     */
+    public long nextBoundaryAfter(long millis) {
+        int start = findFirstStartingAfter(millis);
+        int end = upperBound(mSortedEndMillis, millis);
+        return Math.min(start < mSize ? mStartMillis[start] : Long.MAX_VALUE, end < mSize ? mSortedEndMillis[end] : Long.MAX_VALUE);
+    }
+
+    /**
+     * Finds the events going on at the given time, started at or before it and ending after it
+     *
+     * @param out receives their indices in start order, as many as fit
+     * @return the number of events going on
+     */
+    public int findActive(long millis, int[] out) {
+        return findIntersecting(millis, millis + 1, out);
+    }
+
+    /**
+     * Finds the events overlapping a span of time, e.g. the arc of the dial between two times. Only the events
+     * from the first one whose latest end is after the span begins up to the last one starting before it ends
+     * are looked at.
+     *
+     * @param out receives their indices in start order, as many as fit
+     * @return the number of events overlapping
+     */
+    public int findIntersecting(long beginMillis, long endMillis, int[] out) {
+        int count = 0;
+        int to = findFirstStartingAfter(endMillis - 1);
+        for (int i = upperBound(mMaxEndMillis, beginMillis); i < to; i++) {
+            if (mEndMillis[i] <= beginMillis)
+                continue;
+
+            if (count < out.length)
+                out[count] = i;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return the index of the first event starting after the given time, or size() if there is none
+     */
+    public int findFirstStartingAfter(long millis) {
+        return upperBound(mStartMillis, millis);
+    }
+
+    // the first index of the sorted values that is greater than the given one, or size()
+    private int upperBound(long[] sorted, long value) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle] <= value)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+        return low;
+    }
+
+    /**
+     * Checks whether the given store holds the same instances, with the same contents, in the same order
+     */
+    public boolean contentEquals(EventStore other) {
+        if (other == this)
+            return true;
+
+        return other != null
+                && mSize == other.mSize
+                && Arrays.equals(mIds, other.mIds)
+                && Arrays.equals(mStartMillis, other.mStartMillis)
+                && Arrays.equals(mEndMillis, other.mEndMillis)
+                && Arrays.equals(mAllDay, other.mAllDay)
+                && Arrays.equals(mColors, other.mColors)
+                && Arrays.equals(mTitles, other.mTitles)
+                && Arrays.equals(mLocations, other.mLocations)
+                && Arrays.equals(mStartMinutes, other.mStartMinutes)
+                && Arrays.equals(mEndMinutes, other.mEndMinutes)
+                && Arrays.equals(mStartLocalMinutes, other.mStartLocalMinutes);
+    }
+
+    private void assignLanes() {
+        LaneAllocator.assign(mStartMillis, mEndMillis, mSize, mLanes, mLaneCounts);
+    }
+
+    private void indexTimeline() {
+        long maxEnd = Long.MIN_VALUE;
+        for (int i = 0; i < mSize; i++) {
+            maxEnd = Math.max(maxEnd, mEndMillis[i]);
+            mMaxEndMillis[i] = maxEnd;
+        }
+
+        System.arraycopy(mEndMillis, 0, mSortedEndMillis, 0, mSize);
+        Arrays.sort(mSortedEndMillis);
+    }
+
+    private static void copy(EventStore from, int fromIndex, EventStore to, int toIndex) {
+        to.mIds[toIndex] = from.mIds[fromIndex];
+        to.mTitles[toIndex] = from.mTitles[fromIndex];
+        to.mLocations[toIndex] = from.mLocations[fromIndex];
+        to.mStartMillis[toIndex] = from.mStartMillis[fromIndex];
+        to.mEndMillis[toIndex] = from.mEndMillis[fromIndex];
+        to.mAllDay[toIndex] = from.mAllDay[fromIndex];
+        to.mColors[toIndex] = from.mColors[fromIndex];
+        to.mStartMinutes[toIndex] = from.mStartMinutes[fromIndex];
+        to.mEndMinutes[toIndex] = from.mEndMinutes[fromIndex];
+        to.mStartLocalMinutes[toIndex] = from.mStartLocalMinutes[fromIndex];
+        to.mEndLocalMinutes[toIndex] = from.mEndLocalMinutes[fromIndex];
+        to.mStartAngles[toIndex] = from.mStartAngles[fromIndex];
+        to.mEndAngles[toIndex] = from.mEndAngles[fromIndex];
+        to.mDurationDegrees[toIndex] = from.mDurationDegrees[fromIndex];
+        to.mTitleOnStartingEdge[toIndex] = from.mTitleOnStartingEdge[fromIndex];
+    }
+
+    /**
+     * Collects events in any order, {@link #build()} sorts them by start time
+     */
+    public static class Builder {
+
+        private final TimeEngine mTime = TimeEngine.getInstance();
+        private EventStore mStore;
+        private int mSize;
+
+        public Builder(int capacity) {
+            mStore = new EventStore(Math.max(capacity, 4));
+        }
+
+        public Builder add(long id, String title, long startMillis, long endMillis, String location, boolean allDay, int color) {
+            if (mSize == mStore.mSize) {
+                EventStore grown = new EventStore(mSize * 2);
+                for (int i = 0; i < mSize; i++)
+                    copy(mStore, i, grown, i);
+                mStore = grown;
+            }
+
+            EventStore store = mStore;
+            int i = mSize++;
+
+            // titles and locations repeat a lot between queries, interned they are shared by all stores
+            store.mIds[i] = id;
+            store.mTitles[i] = title != null ? title.intern() : null;
+            store.mLocations[i] = location != null ? location.intern() : null;
+            store.mStartMillis[i] = startMillis;
+            store.mEndMillis[i] = endMillis;
+            store.mAllDay[i] = allDay;
+            store.mColors[i] = color;
+
+            long startLocalMinutes = mTime.getLocalEpochMinutes(startMillis);
+            long endLocalMinutes = mTime.getLocalEpochMinutes(endMillis);
+            float startAngle = PieUtils.getAngleForMinutes((int) (startLocalMinutes % TimeEngine.MINUTES_PER_DIAL));
+            float endAngle = PieUtils.getAngleForMinutes((int) (endLocalMinutes % TimeEngine.MINUTES_PER_DIAL));
+
+            // the dial minutes in between, so events crossing midnight or noon don't end up with a negative
+            // duration, and an event can't take more than the whole dial
+            long dialMinutes = Math.max(0, Math.min(TimeEngine.MINUTES_PER_DIAL, endLocalMinutes - startLocalMinutes));
+
+            store.mStartMinutes[i] = (int) (startLocalMinutes % TimeEngine.MINUTES_PER_DAY);
+            store.mEndMinutes[i] = (int) (endLocalMinutes % TimeEngine.MINUTES_PER_DAY);
+            store.mStartLocalMinutes[i] = startLocalMinutes;
+            store.mEndLocalMinutes[i] = endLocalMinutes;
+            store.mStartAngles[i] = startAngle;
+            store.mEndAngles[i] = endAngle;
+            store.mDurationDegrees[i] = PieUtils.getDegreesForMinutes((int) dialMinutes);
+            store.mTitleOnStartingEdge[i] = (endAngle > Pos.DIAL_6_OCLOCK.nativeInt)
+                    && ((endAngle > Pos.DIAL_3_OCLOCK_ALT.nativeInt) || (endAngle <= Pos.DIAL_12_OCLOCK.nativeInt))
+                    && (startAngle >= Pos.DIAL_6_OCLOCK.nativeInt);
+
+            return this;
+        }
+
+        public EventStore build() {
+            int[] order = new int[mSize];
+            for (int i = 0; i < mSize; i++)
+                order[i] = i;
+            sortByStart(order, new int[mSize], 0, mSize, mStore.mStartMillis);
+
+            EventStore sorted = new EventStore(mSize);
+            for (int i = 0; i < mSize; i++)
+                copy(mStore, order[i], sorted, i);
+            sorted.assignLanes();
+            sorted.indexTimeline();
+            return sorted;
+        }
+
+        // a stable merge sort of the indices, so events starting at the same time keep their order
+        private static void sortByStart(int[] order, int[] scratch, int from, int to, long[] starts) {
+            if (to - from < 2)
+                return;
+
+            int middle = (from + to) >>> 1;
+            sortByStart(order, scratch, from, middle, starts);
+            sortByStart(order, scratch, middle, to, starts);
+
+            if (starts[order[middle - 1]] <= starts[order[middle]])
+                return;
+
+            System.arraycopy(order, from, scratch, from, to - from);
+            int left = from;
+            int right = middle;
+            for (int i = from; i < to; i++) {
+                if (right >= to || (left < middle && starts[scratch[left]] <= starts[scratch[right]]))
+                    order[i] = scratch[left++];
+                else
+                    order[i] = scratch[right++];
+            }
+        }
+    }
+}
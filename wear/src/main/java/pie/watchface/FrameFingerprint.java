@@ -0,0 +1,52 @@
+package pie.watchface;
+
+import android.graphics.Rect;
+
+/**
+ * Everything an interactive frame depends on, to recognize a frame that would come out pixel-identical to the
+ * last one before running the pipeline. The inputs are kept and compared as they are, a hash could collide and
+ * show a stale frame. Ambient frames aren't fingerprinted, the ambient renderer keeps its own frame.
+ */
+public class FrameFingerprint {
+
+    private boolean mValid;
+    private long mLocalMinutes;
+    private final Rect mBounds = new Rect();
+    private long mSnapshotVersion;
+    private int mNextEvent;
+    private Object mBackground;
+
+    /**
+     * Takes the inputs of the frame about to be drawn
+     *
+     * @param nextEvent  the index of the next event, which gets the time left
+     * @param background the background image the frame is drawn with, compared by identity
+     * @return whether they are the same as the last frame's
+     */
+    public boolean update(long localMinutes, Rect bounds, long snapshotVersion, int nextEvent, Object background) {
+        boolean same = mValid
+                && mLocalMinutes == localMinutes
+                && mBounds.equals(bounds)
+                && mSnapshotVersion == snapshotVersion
+                && mNextEvent == nextEvent
+                && mBackground == background;
+
+        if (!same) {
+            mValid = true;
+            mLocalMinutes = localMinutes;
+            mBounds.set(bounds);
+            mSnapshotVersion = snapshotVersion;
+            mNextEvent = nextEvent;
+            mBackground = background;
+        }
+        return same;
+    }
+
+    /**
+     * Makes the next frame differ, for changes that aren't part of the fingerprint
+     */
+    public void invalidate() {
+        mValid = false;
+        mBackground = null;
+    }
+}
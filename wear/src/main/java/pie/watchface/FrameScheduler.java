@@ -0,0 +1,156 @@
+package pie.watchface;
+
+import android.view.Choreographer;
+
+/**
+ * Paces interactive redraws on vsync at a target frame rate, for a smoothly sweeping hand and horizon.
+ * <p>
+ * The owner reports the CPU time every frame requested through {@link Callback#onFrame()} took with
+ * {@link #onFrameDrawn(long, long)}, other redraws aren't reported. Frames may take at most the CPU budget
+ * fraction of the frame interval; when they keep overrunning it, the frame rate is halved, and it is doubled
+ * again, up to the target, once frames fit the budget for a while. When frames don't even fit at the lowest
+ * rate, the scheduler stops and the face falls back to minute ticks.
+ */
+public class FrameScheduler implements Choreographer.FrameCallback {
+
+    public static final String TAG = FrameScheduler.class.getSimpleName();
+
+    public interface Callback {
+        /**
+         * Called on the main thread when a frame is due, usually invalidates the watch face
+         */
+        void onFrame();
+    }
+
+    // the lowest rate before giving up on smooth motion
+    private static final int MIN_FRAME_RATE = 1;
+
+    // consecutive frames over budget before the rate gets halved
+    private static final int OVERRUNS_BEFORE_SLOWDOWN = 3;
+
+    // how long frames need to fit the budget before the rate gets doubled
+    private static final long RECOVERY_NANOS = 5 * 1000000000L;
+
+    // wake up a vsync early, so the frame lands on the vsync it is due at
+    private static final long VSYNC_MILLIS = 16;
+
+    private final Callback mCallback;
+    private final Choreographer mChoreographer;
+
+    private int mTargetFrameRate;
+    private float mCpuBudget;
+    private int mFrameRate;
+
+    private boolean mRunning;
+    private long mLastFrameNanos;
+    private int mOverruns;
+    private long mWithinBudgetSinceNanos;
+
+    /**
+     * @param targetFrameRate the frame rate to run at, in frames per second
+     * @param cpuBudget the fraction of the time the frames may use the CPU, e.g. 0.1 for 10%
+     */
+    public FrameScheduler(Callback callback, int targetFrameRate, float cpuBudget) {
+        this.mCallback = callback;
+        this.mChoreographer = Choreographer.getInstance();
+        this.mTargetFrameRate = Math.max(MIN_FRAME_RATE, targetFrameRate);
+        this.mCpuBudget = cpuBudget;
+        this.mFrameRate = mTargetFrameRate;
+    }
+
+    public void setTargetFrameRate(int targetFrameRate) {
+        this.mTargetFrameRate = Math.max(MIN_FRAME_RATE, targetFrameRate);
+        this.mFrameRate = mTargetFrameRate;
+    }
+
+    public void setCpuBudget(float cpuBudget) {
+        this.mCpuBudget = cpuBudget;
+    }
+
+    /**
+     * @return the current frame rate, lower than the target while frames overrun the budget
+     */
+    public int getFrameRate() {
+        return mFrameRate;
+    }
+
+    public boolean isRunning() {
+        return mRunning;
+    }
+
+    /**
+     * Starts or stops the frames, stopping takes effect immediately
+     */
+    public void setRunning(boolean running) {
+        if (running == mRunning)
+            return;
+
+        mRunning = running;
+        if (running) {
+            mFrameRate = mTargetFrameRate;
+            mLastFrameNanos = 0;
+            mOverruns = 0;
+            mWithinBudgetSinceNanos = 0;
+            mChoreographer.postFrameCallback(this);
+        } else {
+            mChoreographer.removeFrameCallback(this);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (!mRunning)
+            return;
+
+        long intervalNanos = 1000000000L / mFrameRate;
+        long sinceLastFrame = frameTimeNanos - mLastFrameNanos;
+
+        if (mLastFrameNanos == 0 || sinceLastFrame >= intervalNanos - VSYNC_MILLIS * 1000000L / 2) {
+            mLastFrameNanos = frameTimeNanos;
+            sinceLastFrame = 0;
+            RenderStats.count(RenderStats.COUNT_SWEEP_FRAMES);
+            mCallback.onFrame();
+        }
+
+        // sleep until just before the next frame is due, instead of waking up on every vsync
+        long delayMillis = (intervalNanos - sinceLastFrame) / 1000000L - VSYNC_MILLIS;
+        if (delayMillis > 0)
+            mChoreographer.postFrameCallbackDelayed(this, delayMillis);
+        else
+            mChoreographer.postFrameCallback(this);
+    }
+
+    /**
+     * Reports the CPU time a frame requested by this scheduler took, adapting the frame rate to the budget
+     */
+    public void onFrameDrawn(long cpuNanos, long nowNanos) {
+        if (!mRunning)
+            return;
+
+        long budgetNanos = (long) (1000000000L / mFrameRate * mCpuBudget);
+
+        if (cpuNanos > budgetNanos) {
+            mWithinBudgetSinceNanos = 0;
+            if (++mOverruns < OVERRUNS_BEFORE_SLOWDOWN)
+                return;
+
+            mOverruns = 0;
+            RenderStats.count(RenderStats.COUNT_FRAME_RATE_DROPS);
+            if (mFrameRate > MIN_FRAME_RATE)
+                mFrameRate = Math.max(MIN_FRAME_RATE, mFrameRate / 2);
+            else
+                setRunning(false);
+        } else {
+            mOverruns = 0;
+            if (mFrameRate >= mTargetFrameRate)
+                return;
+
+            if (mWithinBudgetSinceNanos == 0) {
+                mWithinBudgetSinceNanos = nowNanos;
+            } else if (nowNanos - mWithinBudgetSinceNanos >= RECOVERY_NANOS) {
+                mFrameRate = Math.min(mTargetFrameRate, mFrameRate * 2);
+                mWithinBudgetSinceNanos = nowNanos;
+            }
+        }
+    }
+}
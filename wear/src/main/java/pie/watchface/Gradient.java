@@ -0,0 +1,51 @@
+package pie.watchface;
+
+/**
+ * A platform independent, immutable color gradient for a {@link Brush}
+ */
+public final class Gradient {
+
+    public static final int LINEAR = 0;
+    public static final int SWEEP = 1;
+
+    public final int type;
+
+    // linear: from (x0, y0) to (x1, y1), sweep: around the center (x0, y0)
+    public final float x0;
+    public final float y0;
+    public final float x1;
+    public final float y1;
+
+    // sweep only: the angle the sweep starts at, in degrees clockwise from 3 o'clock
+    public final float startAngle;
+
+    public final int[] colors;
+    public final float[] positions;
+
+    // linear only: whether the gradient gets mirrored beyond its ends, instead of clamped
+    public final boolean mirror;
+
+    // whatever a render target derived from this gradient, e.g. a shader, and the rotation it was last drawn with
+    public Object nativeGradient;
+    public float nativeRotation;
+
+    private Gradient(int type, float x0, float y0, float x1, float y1, float startAngle, int[] colors, float[] positions, boolean mirror) {
+        this.type = type;
+        this.x0 = x0;
+        this.y0 = y0;
+        this.x1 = x1;
+        this.y1 = y1;
+        this.startAngle = startAngle;
+        this.colors = colors;
+        this.positions = positions;
+        this.mirror = mirror;
+    }
+
+    public static Gradient linear(float x0, float y0, float x1, float y1, int[] colors, float[] positions, boolean mirror) {
+        return new Gradient(LINEAR, x0, y0, x1, y1, 0, colors, positions, mirror);
+    }
+
+    public static Gradient sweep(float centerX, float centerY, float startAngle, int[] colors, float[] positions) {
+        return new Gradient(SWEEP, centerX, centerY, centerX, centerY, startAngle, colors, positions, false);
+    }
+}
@@ -0,0 +1,64 @@
+package pie.watchface;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Assigns overlapping events to lanes, like the columns of a day view. Sweeping the events in start order,
+ * each event takes the lowest lane that is free at its start. The running events are kept in a heap by
+ * their end and the free lanes in a heap of their own, so the whole assignment takes O(n log n).
+ * <p>
+ * Events overlapping each other, directly or through others, form a group, and every event of the group
+ * gets the number of lanes the group needed, so the pieces of one group split the radius evenly.
+ */
+public final class LaneAllocator {
+
+    private LaneAllocator() {
+    }
+
+    /**
+     * @param startMillis the starts of the events, sorted
+     * @param endMillis   the ends of the events
+     * @param size        the number of events
+     * @param lanes       receives the lane of every event, 0 is the outer one
+     * @param laneCounts  receives the number of lanes of every event's group
+     */
+    public static void assign(long[] startMillis, final long[] endMillis, int size, int[] lanes, int[] laneCounts) {
+        PriorityQueue<Integer> running = new PriorityQueue<>(Math.max(size, 1), new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long endA = endMillis[a];
+                long endB = endMillis[b];
+                return endA < endB ? -1 : (endA == endB ? 0 : 1);
+            }
+        });
+        PriorityQueue<Integer> freeLanes = new PriorityQueue<>();
+
+        int groupStart = 0;
+        int groupLanes = 0;
+
+        for (int i = 0; i < size; i++) {
+            while (!running.isEmpty() && endMillis[running.peek()] <= startMillis[i])
+                freeLanes.add(lanes[running.poll()]);
+
+            if (running.isEmpty()) {
+                // nothing overlaps this event anymore, the previous group is complete
+                fillLaneCounts(laneCounts, groupStart, i, groupLanes);
+                groupStart = i;
+                groupLanes = 0;
+                freeLanes.clear();
+            }
+
+            int lane = freeLanes.isEmpty() ? groupLanes++ : freeLanes.poll();
+            lanes[i] = lane;
+            running.add(i);
+        }
+
+        fillLaneCounts(laneCounts, groupStart, size, groupLanes);
+    }
+
+    private static void fillLaneCounts(int[] laneCounts, int from, int to, int count) {
+        for (int i = from; i < to; i++)
+            laneCounts[i] = count;
+    }
+}
@@ -0,0 +1,72 @@
+package pie.watchface;
+
+/**
+ * An offscreen layer holding a rendered part of the watch face, so layers that rarely change can
+ * be blitted each frame instead of being drawn again. The owner decides when the cache is stale
+ * and calls {@link #invalidate()}.
+ */
+public class LayerCache {
+
+    private final int mFormat;
+    private RenderTarget.Layer mLayer;
+    private boolean mValid;
+
+    /**
+     * @param format one of the {@link RenderTarget} LAYER_ formats, an opaque layer has to get fully covered
+     */
+    public LayerCache(int format) {
+        this.mFormat = format;
+    }
+
+    public boolean isValid() {
+        return mValid;
+    }
+
+    public void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Clears the layer unless it's opaque and gets covered anyway, (re)allocating it from the given target when the size changed, and returns the target
+     * to draw it with. Call {@link #endDrawing()} once the layer is complete.
+     */
+    public RenderTarget beginDrawing(RenderTarget target, int width, int height) {
+        if (mLayer == null || mLayer.getWidth() != width || mLayer.getHeight() != height) {
+            release();
+            mLayer = target.createLayer(width, height, mFormat);
+        } else if (mFormat == RenderTarget.LAYER_TRANSLUCENT) {
+            mLayer.clear();
+        }
+
+        mValid = false;
+        return mLayer.getTarget();
+    }
+
+    public void endDrawing() {
+        mValid = true;
+    }
+
+    /**
+     * Draws the cached layer onto the given target
+     */
+    public void draw(RenderTarget target, float left, float top) {
+        if (mLayer != null)
+            target.drawLayer(mLayer, left, top);
+    }
+
+    /**
+     * Draws the cached layer onto the given target, rotated along the line from start to stop
+     */
+    public void drawOnLine(RenderTarget target, float startX, float startY, float stopX, float stopY, float x, float y) {
+        if (mLayer != null)
+            target.drawLayerOnLine(mLayer, startX, startY, stopX, stopY, x, y);
+    }
+
+    public void release() {
+        mValid = false;
+        if (mLayer != null) {
+            mLayer.release();
+            mLayer = null;
+        }
+    }
+}
@@ -12,19 +12,35 @@ import java.util.Date;
  */
 public class PieUtils {
 
+    // the dial has one position per minute of a 12 hour face, so every half a degree
+    public static final int DIAL_POSITIONS = 720;
+
+    // the canvas angle (arc drawing offset included) for every minute of the day
+    private static final float[] ANGLE_FOR_MINUTES = new float[24 * 60];
+
+    // sine and cosine for every half degree position of the dial
+    private static final double[] SIN_HALF_DEGREES = new double[DIAL_POSITIONS];
+    private static final double[] COS_HALF_DEGREES = new double[DIAL_POSITIONS];
+
+    static {
+        for (int minutes = 0; minutes < ANGLE_FOR_MINUTES.length; minutes++)
+            ANGLE_FOR_MINUTES[minutes] = computeAngleForMinutes(minutes, true);
+
+        for (int i = 0; i < DIAL_POSITIONS; i++) {
+            double radians = (i * 0.5) * Math.PI / 180f;
+            SIN_HALF_DEGREES[i] = Math.sin(radians);
+            COS_HALF_DEGREES[i] = Math.cos(radians);
+        }
+    }
+
     /**
-     * Transform a given date to minutes, removing the difference for AM and PM
+     * Transform a given date to minutes of the day, in local time
      *
      * @param date
      * @return
      */
     public static int getDateInMinutes(Date date) {
-        int minutes = date.getMinutes();
-        int hours = date.getHours();
-
-        minutes = minutes + (hours * 60);
-
-        return minutes;
+        return TimeEngine.getInstance().getMinuteOfDay(date.getTime());
     }
 
     public static float getDegreesForMinutes(int minutes) {
@@ -44,6 +60,13 @@ public class PieUtils {
     }
 
     private static float getAngleForDate(int minutes, boolean takeArcDrawingOffsetIntoAccount) {
+        if (takeArcDrawingOffsetIntoAccount && minutes >= 0 && minutes < ANGLE_FOR_MINUTES.length)
+            return ANGLE_FOR_MINUTES[minutes];
+
+        return computeAngleForMinutes(minutes, takeArcDrawingOffsetIntoAccount);
+    }
+
+    private static float computeAngleForMinutes(int minutes, boolean takeArcDrawingOffsetIntoAccount) {
         // get the angle starting from the top (12 o clock)
         float startAngle = getDegreesForMinutes(minutes);
 
@@ -73,10 +96,68 @@ public class PieUtils {
      * @return
      */
     public static Point getPointOnTheCircleCircumference(double radius, double angle, float centreX, float centreY) {
-        int y = (int) Math.round(centreY + radius * Math.sin(angle * Math.PI / 180f));
-        int x = (int) Math.round(centreX + radius * Math.cos(angle * Math.PI / 180f));
+        return getPointOnTheCircleCircumference(radius, angle, centreX, centreY, new Point());
+    }
+
+    /**
+     * Same as {@link #getPointOnTheCircleCircumference(double, double, float, float)}, but writes the
+     * coordinates into the given point instead of allocating a new one
+     *
+     * @return the given point
+     */
+    public static Point getPointOnTheCircleCircumference(double radius, double angle, float centreX, float centreY, Point out) {
+        long packed = getPackedPointOnTheCircleCircumference(radius, angle, centreX, centreY);
+        out.set(unpackX(packed), unpackY(packed));
+        return out;
+    }
+
+    /**
+     * Same as {@link #getPointOnTheCircleCircumference(double, double, float, float)}, with the coordinates
+     * packed into a single long, see {@link #unpackX(long)} and {@link #unpackY(long)}
+     */
+    public static long getPackedPointOnTheCircleCircumference(double radius, double angle, float centreX, float centreY) {
+        int position = getDialPosition(angle);
+        double sin;
+        double cos;
+
+        if (position >= 0) {
+            sin = SIN_HALF_DEGREES[position];
+            cos = COS_HALF_DEGREES[position];
+        } else {
+            sin = Math.sin(angle * Math.PI / 180f);
+            cos = Math.cos(angle * Math.PI / 180f);
+        }
+
+        int y = (int) Math.round(centreY + radius * sin);
+        int x = (int) Math.round(centreX + radius * cos);
+
+        return packPoint(x, y);
+    }
+
+    /**
+     * @return the index of the half degree dial position for the given angle, or -1 if the angle
+     * doesn't fall exactly on one
+     */
+    public static int getDialPosition(double angle) {
+        double halfDegrees = angle * 2;
+        int position = (int) halfDegrees;
+        if (position != halfDegrees)
+            return -1;
+
+        position %= DIAL_POSITIONS;
+        return position < 0 ? position + DIAL_POSITIONS : position;
+    }
+
+    public static long packPoint(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    public static int unpackX(long packedPoint) {
+        return (int) (packedPoint >> 32);
+    }
 
-        return new Point(x, y);
+    public static int unpackY(long packedPoint) {
+        return (int) packedPoint;
     }
 
     public static float getPixelsForDips(Context context, float dips) {
@@ -2,22 +2,14 @@ package pie.watchface;
 
 import android.content.Context;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.LinearGradient;
-import android.graphics.Matrix;
-import android.graphics.Paint;
-import android.graphics.Path;
 import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.Shader;
-import android.graphics.SweepGradient;
-import android.graphics.Typeface;
 
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -29,390 +21,575 @@ public class PieWatchFace {
 
     public static final int MIN_DEG_FOR_TITLE = 15; // min degrees required for the title to be displayed on the pie piece
 
-    private Context mContext;
+    // about 30 titles and time left labels, enough for a busy half day
+    private static final int TEXT_SPRITE_CACHE_BYTES = 1024 * 1024;
+
+    // the average color of the background image
+    private static final int BACKGROUND_FILL_COLOR = 0xFF141414;
 
-    @SuppressWarnings("unused")
-    private boolean mLowBitAmbientMode;
+    // the degrees the horizon separator fades in over, up to the hand
+    private static final int HORIZON_SEPARATOR_LENGTH = 40;
+
+    private Context mContext;
 
-    @SuppressWarnings("unused")
-    private boolean mBurnInProtectionMode;
+    // draws the face in ambient mode, which takes the low-bit and burn-in protection modes into account
+    private AmbientRenderer mAmbientRenderer;
 
-    private Bitmap mBackgroundImg;
+    // decoded off the UI thread, a solid fill of about the same color stands in until it is ready
+    private final BackgroundImage mBackgroundImage;
 
     // all paint brushes
-    private Paint mPiePaint;
-    private Paint mTextPaint;
-    private Paint mDialPaint;
-    private Paint mDotPaint;
-    private Paint mHorizonPaint;
-    private Paint mTimeLeftTextPaint;
+    private Brush mPieBrush;
+    private Brush mTextBrush;
+    private Brush mDialBrush;
+    private Brush mDotBrush;
+    private Brush mHorizonBrush;
+    private Brush mTimeLeftTextBrush;
+
+    // the brush for the ambient mode peek card background
+    private Brush mPeekCardBrush;
+
+    // the dimensions for the current bounds and screen shape, made again only when they change
+    private RenderConfig mConfig;
+    private int mBottomInset;
+
+    // the target draw(Canvas, ...) renders through
+    private final CanvasRenderTarget mCanvasTarget = new CanvasRenderTarget();
 
     // watchface variables calculated on every draw() call
-    private Canvas mCanvas;
+    private RenderTarget mTarget;
     private Rect mWatchFaceBounds;
     private boolean mAmbientMode;
+    private boolean mSmoothSweep;
+    private int mNowMinutes;
     private float mCurrentAngle;
-    private PointF mWatchFaceCenter;
-    private List<CalendarEvent> mAllCalendarEvents;
+    private final Point mNowPoint = new Point();
+    private final TimeEngine mTime = TimeEngine.getInstance();
+    private long mNowMillis;
+    private long mNowLocalMinutes;
+    private long mNowEpochMinutes;
+    private EventSnapshot mEventSnapshot;
+    private int mNextEvent;
+
+    // loads the events off the UI thread, draw() only reads its last published snapshot
+    private CalendarEventLoader mEventLoader;
+
+    // whether the loader and the background image are this face's own, or shared with other faces
+    private final boolean mOwnsSources;
+
+    // from creating the face to the first frame drawn with loaded events, 0 once it has been recorded
+    private long mColdStartNanos;
+
+    // the render geometry for every event, rebuilt only when what they were built for changes
+    private final List<EventLayout> mEventLayouts = new ArrayList<>();
+    private int mEventLayoutCount;
+    private long mLayoutSnapshotVersion = -1;
+    private RenderConfig mLayoutConfig;
+    private boolean mLayoutAmbientMode;
+    private int mLayoutNextEvent = -1;
+
+    // the events going on when the layouts were last brought up to date, only their clipping can move
+    private int[] mActiveEvents = new int[0];
+    private int mActiveEventCount;
+
+    // the background and event pieces, which only change together with the event layouts
+    private final LayerCache mPieLayer = new LayerCache(RenderTarget.LAYER_TRANSLUCENT);
+    private Bitmap mPieLayerBackground;
+
+    // the titles and time left texts, rendered once and blitted along their lines
+    private final TextSpriteCache mTextSprites = new TextSpriteCache(TEXT_SPRITE_CACHE_BYTES);
+
+    // the last frame drawn, blitted again as long as its fingerprint stays the same, at full depth so it looks
+    // exactly like a frame drawn directly
+    private final LayerCache mFrame = new LayerCache(RenderTarget.LAYER_OPAQUE);
+    private final FrameFingerprint mFrameFingerprint = new FrameFingerprint();
+
+    // the horizon separator, rendered once per size and only rotated along with the hand
+    private float mHorizonRadius;
+    private final RotatingSprite mHorizonSprite = new RotatingSprite(new RotatingSprite.Painter() {
+        @Override
+        public void paint(RenderTarget target, float pivotX, float pivotY) {
+            paintHorizon(target, pivotX, pivotY);
+        }
+    });
 
 
-    public PieWatchFace(Context context) {
+    /**
+     * Creates a face with its own background image, which owns the loader and quits it when destroyed
+     */
+    public PieWatchFace(Context context, CalendarEventLoader eventLoader) {
+        this(context, eventLoader, new BackgroundImage(context, R.drawable.bg), true);
+        mEventLoader.requestLoad();
+    }
+
+    /**
+     * Creates a face drawing the events and background image shared by all faces, see {@link EventRepository},
+     * which keeps owning them
+     */
+    public PieWatchFace(Context context, CalendarEventLoader eventLoader, BackgroundImage backgroundImage) {
+        this(context, eventLoader, backgroundImage, false);
+    }
+
+    private PieWatchFace(Context context, CalendarEventLoader eventLoader, BackgroundImage backgroundImage, boolean ownsSources) {
+        this.mColdStartNanos = RenderStats.startTimer();
         this.mContext = context;
+        this.mEventLoader = eventLoader;
+        this.mBackgroundImage = backgroundImage;
+        this.mOwnsSources = ownsSources;
+        this.mAmbientRenderer = new AmbientRenderer();
         createPaintBrushes();
-        fetchCalendarEvents();
     }
 
     public void draw(Canvas canvas, Rect watchFaceBounds, Rect peekCardBounds, boolean ambientMode) {
-        // TODO: account for screen bounds, otherwise, events get drawn outside the screen view
+        mCanvasTarget.setCanvas(canvas, canvas.getWidth(), canvas.getHeight());
+        draw(mCanvasTarget, watchFaceBounds, peekCardBounds, ambientMode, System.currentTimeMillis());
+        mCanvasTarget.setCanvas(null, 0, 0);
+    }
 
+    /**
+     * Draws the watch face as it looks at the given time onto any render target, e.g. one without a screen
+     */
+    public void draw(RenderTarget target, Rect watchFaceBounds, Rect peekCardBounds, boolean ambientMode, long nowMillis) {
         /**
          * ----- LAYERS ( drawing in reverse order ) ----- *
          * 0. Ambient mode Peek card overlay
          * 1. Hour markers and center dot plus time arm (basic clock)
-         * 2. Events (all day, then normal events)
-         * 3. BG Image
+         * 2. Horizon
+         * 3. Time left till the next event
+         * 4. Events (all day, then normal events)   \  cached in the pie layer, only redrawn when
+         * 5. BG Image                               /  the events, bounds or mode change
+         *
+         * Outside of a smooth sweep and ambient mode the whole frame is kept, and blitted while its fingerprint
+         * stays the same. The ambient renderer keeps its own frame.
          */
 
-        this.mCanvas = canvas;
+        long frameStart = RenderStats.startTimer();
+        RenderStats.count(RenderStats.COUNT_FRAMES);
+
+        this.mTarget = target;
         this.mWatchFaceBounds = watchFaceBounds;
         this.mAmbientMode = ambientMode;
-        this.mCurrentAngle = PieUtils.getAngleForDate(new Date(), true);
-        this.mWatchFaceCenter = new PointF(mWatchFaceBounds.exactCenterX(), mWatchFaceBounds.exactCenterY());
+        this.mNowMillis = nowMillis;
+        this.mNowLocalMinutes = mTime.getLocalEpochMinutes(nowMillis);
+        this.mNowEpochMinutes = TimeEngine.getEpochMinutes(nowMillis);
+        this.mNowMinutes = (int) (mNowLocalMinutes % TimeEngine.MINUTES_PER_DAY);
+        this.mCurrentAngle = PieUtils.getAngleForMinutes(mNowMinutes % TimeEngine.MINUTES_PER_DIAL);
+        if (mSmoothSweep && !ambientMode) {
+            // move on within the minute, half a degree per minute
+            int millisInMinute = mTime.getMillisOfMinute(nowMillis);
+            this.mCurrentAngle += PieUtils.getDegreesForMinutes(1) * millisInMinute / (float) TimeEngine.MILLIS_PER_MINUTE;
+        }
+        if (mConfig == null || !mConfig.matches(watchFaceBounds, mBottomInset))
+            applyConfig(new RenderConfig(mContext, watchFaceBounds, mBottomInset));
+        this.mEventSnapshot = mEventLoader.getSnapshot();
+        this.mNextEvent = mEventSnapshot.events.findNextEvent(nowMillis);
 
+        // the background image is decoded in the background, the frame changes once it's ready
+        Bitmap background = mAmbientMode ? null : mBackgroundImage.get(mWatchFaceBounds.width(), mWatchFaceBounds.height());
 
-        drawBgImage();
+        // a smooth sweep moves on with every frame, any other interactive frame is kept and blitted again until what
+        // it shows changes. the ambient renderer already blits its own frame, a second copy would only cost memory
+        if (mAmbientMode) {
+            mFrameFingerprint.invalidate();
+            mFrame.release();
+            drawFrame(target, peekCardBounds, background);
+        } else if (mSmoothSweep) {
+            mFrameFingerprint.invalidate();
+            drawFrame(target, peekCardBounds, background);
+        } else if (mFrameFingerprint.update(mNowLocalMinutes, mWatchFaceBounds, mEventSnapshot.version, mNextEvent, background)
+                && mFrame.isValid()) {
+            RenderStats.count(RenderStats.COUNT_SKIPPED_FRAMES);
+            mFrame.draw(target, 0, 0);
+        } else {
+            mTarget = mFrame.beginDrawing(target, mWatchFaceBounds.width(), mWatchFaceBounds.height());
+            drawFrame(target, peekCardBounds, background);
+            mFrame.endDrawing();
+            mFrame.draw(target, 0, 0);
+        }
+
+        mTarget = target;
+        RenderStats.stopTimer(RenderStats.TIMER_FRAME, frameStart);
+    }
 
-        drawEvents();
+    /**
+     * Runs the pipeline onto mTarget, creating its layers from the given target
+     */
+    private void drawFrame(RenderTarget target, Rect peekCardBounds, Bitmap background) {
+        RenderStats.count(RenderStats.COUNT_RENDERED_FRAMES);
+        RenderTarget frameTarget = mTarget;
 
+        if (updateEventLayouts()) {
+            mPieLayer.invalidate();
+            mAmbientRenderer.invalidate();
+        }
+
+        if (mAmbientMode) {
+            RenderStats.count(RenderStats.COUNT_AMBIENT_FRAMES);
+            long start = RenderStats.startTimer();
+            mAmbientRenderer.draw(mTarget, mConfig, mNowMinutes, mCurrentAngle, mEventLayouts, mEventLayoutCount);
+            RenderStats.stopTimer(RenderStats.TIMER_AMBIENT_FRAME, start);
+
+            drawPeekCardBounds(peekCardBounds);
+            recordColdStart();
+            return;
+        }
+
+        // the layer is drawn again once the background image is ready, or has been decoded for new bounds
+        if (background != mPieLayerBackground)
+            mPieLayer.invalidate();
+
+        if (!mPieLayer.isValid()) {
+            RenderStats.count(RenderStats.COUNT_PIE_LAYER_MISSES);
+            mTarget = mPieLayer.beginDrawing(target, mWatchFaceBounds.width(), mWatchFaceBounds.height());
+
+            long start = RenderStats.startTimer();
+            drawBgImage(background);
+            mPieLayerBackground = background;
+            RenderStats.stopTimer(RenderStats.TIMER_BG_IMAGE, start);
+
+            start = RenderStats.startTimer();
+            drawEvents();
+            RenderStats.stopTimer(RenderStats.TIMER_EVENTS, start);
+
+            mPieLayer.endDrawing();
+            mTarget = frameTarget;
+        } else {
+            RenderStats.count(RenderStats.COUNT_PIE_LAYER_HITS);
+        }
+
+        mPieLayer.draw(mTarget, 0, 0);
+
+        drawTimeLeft();
+
+        long start = RenderStats.startTimer();
         drawHorizon();
+        RenderStats.stopTimer(RenderStats.TIMER_HORIZON, start);
 
+        start = RenderStats.startTimer();
         drawBasicClock();
+        RenderStats.stopTimer(RenderStats.TIMER_BASIC_CLOCK, start);
 
         drawPeekCardBounds(peekCardBounds);
+        recordColdStart();
     }
 
-    private void drawBasicClock() {
+    // the first frame drawn from a restored or queried snapshot ends the cold start
+    private void recordColdStart() {
+        if (mColdStartNanos != 0 && mEventSnapshot.version > 0) {
+            RenderStats.stopTimer(RenderStats.TIMER_COLD_START, mColdStartNanos);
+            mColdStartNanos = 0;
+        }
+    }
 
-        int width = mWatchFaceBounds.width();
-        int height = mWatchFaceBounds.height();
-        double radius = width / 2;
+    private void drawBasicClock() {
+        RenderConfig config = mConfig;
+        PointF center = config.center;
+        RectF dial = config.dialBounds;
 
         // drawing current time indicator
-        Point nowPoint = PieUtils.getPointOnTheCircleCircumference(radius, mCurrentAngle, mWatchFaceCenter.x, mWatchFaceCenter.y);
-        mCanvas.drawLine(mWatchFaceCenter.x, mWatchFaceCenter.y, nowPoint.x, nowPoint.y, mDialPaint);
+        Point nowPoint = config.dial.project(mCurrentAngle, mNowPoint);
+        mTarget.drawLine(center.x, center.y, nowPoint.x, nowPoint.y, mDialBrush);
 
         // drawing center dot
-        mCanvas.drawCircle(mWatchFaceCenter.x, mWatchFaceCenter.y, PieUtils.getPixelsForDips(mContext, 5), mDotPaint);
+        mTarget.drawCircle(center.x, center.y, config.centerDotRadius, mDotBrush);
 
         // drawing hour markers
-        float markerLength = PieUtils.getPixelsForDips(mContext, 10);
-        mCanvas.drawLine(mWatchFaceCenter.x, height, mWatchFaceCenter.x, height - markerLength, mDialPaint);
-        mCanvas.drawLine(mWatchFaceCenter.x, 0, mWatchFaceCenter.x, markerLength, mDialPaint);
-        mCanvas.drawLine(width, mWatchFaceCenter.y, width - markerLength, mWatchFaceCenter.y, mDialPaint);
-        mCanvas.drawLine(0, mWatchFaceCenter.y, markerLength, mWatchFaceCenter.y, mDialPaint);
+        float markerLength = config.markerLength;
+        mTarget.drawLine(center.x, dial.bottom, center.x, dial.bottom - markerLength, mDialBrush);
+        mTarget.drawLine(center.x, dial.top, center.x, dial.top + markerLength, mDialBrush);
+        mTarget.drawLine(dial.right, center.y, dial.right - markerLength, center.y, mDialBrush);
+        mTarget.drawLine(dial.left, center.y, dial.left + markerLength, center.y, mDialBrush);
     }
 
     private void drawPeekCardBounds(Rect peekCardBounds) {
         if (mAmbientMode) {
-            Paint paint = new Paint();
-            paint.setColor(Color.BLACK);
-            mCanvas.drawRect(peekCardBounds, paint);
+            mPeekCardBrush.setColor(Color.BLACK);
+            mTarget.drawRect(peekCardBounds.left, peekCardBounds.top, peekCardBounds.right, peekCardBounds.bottom, mPeekCardBrush);
 
-            paint.setColor(Color.WHITE);
-            mCanvas.drawLine(peekCardBounds.left, peekCardBounds.top, peekCardBounds.right, peekCardBounds.top, paint);
+            mPeekCardBrush.setColor(Color.WHITE);
+            mTarget.drawLine(peekCardBounds.left, peekCardBounds.top, peekCardBounds.right, peekCardBounds.top, mPeekCardBrush);
         }
     }
 
     private void drawEvents() {
+        if (!mAmbientMode) {
+            RectF dial = mConfig.dialBounds;
+            int laneCount = 1;
+            for (int i = 0; i < mEventLayoutCount; i++)
+                laneCount = Math.max(laneCount, mEventLayouts.get(i).laneCount);
+
+            // outer lanes first, so the pieces of inner lanes stay visible on top of them
+            for (int lane = 0; lane < laneCount; lane++) {
+                for (int i = 0; i < mEventLayoutCount; i++) {
+                    EventLayout layout = mEventLayouts.get(i);
+                    if (layout.lane != lane)
+                        continue;
+
+                    float inset = layout.arcInset;
+                    mPieBrush.setColor(layout.color);
+                    mTarget.drawArc(dial.left + inset, dial.top + inset, dial.right - inset, dial.bottom - inset
+                            , layout.arcStartAngle, layout.arcSweepAngle, mPieBrush);
+                }
+            }
+        }
 
-        RectF floatingPointBounds = new RectF(mWatchFaceBounds);
-
-        int nowMinutes = PieUtils.getDateInMinutes(new Date());
-        float nowAngle = PieUtils.getAngleForMinutes(nowMinutes);
-        double radius = mWatchFaceBounds.width() / 2;
-
-        for (int i = 0; i < mAllCalendarEvents.size(); i++) {
-            CalendarEvent event = mAllCalendarEvents.get(i);
-            mPiePaint.setColor(event.displayColor);
-
-
-            int startMinutes = PieUtils.getDateInMinutes(event.startDate);
-            int endMinutes = PieUtils.getDateInMinutes(event.endDate);
-            float eventDuration = event.durationInDegrees;
+        for (int i = 0; i < mEventLayoutCount; i++) {
+            EventLayout layout = mEventLayouts.get(i);
 
-            if (i > 0 && event.startDate.compareTo(mAllCalendarEvents.get(i - 1).startDate) == 0) {
-                startMinutes += 20;
-            }
+            mTextBrush.setTextAlign(layout.titleAlign);
+            mTextBrush.setGradient(layout.titleGradient);
 
-            float eventStartAngle = PieUtils.getAngleForMinutes(startMinutes);
-
-            // start and end points for the piece
-            Point startPoint;
-            Point endPoint = PieUtils.getPointOnTheCircleCircumference(radius, event.endAngle, mWatchFaceCenter.x, mWatchFaceCenter.y);
-
-            // draw piece background
-            if (nowMinutes > startMinutes && nowMinutes < endMinutes) {
-                // we are on this event
-                eventStartAngle = nowAngle;
-                eventDuration = PieUtils.getDegreesForMinutes(endMinutes - nowMinutes);
-                startPoint = PieUtils.getPointOnTheCircleCircumference(radius, nowAngle, mWatchFaceCenter.x, mWatchFaceCenter.y);
-            } else {
-                // normal future event
-                startPoint = PieUtils.getPointOnTheCircleCircumference(radius, eventStartAngle, mWatchFaceCenter.x, mWatchFaceCenter.y);
-            }
+            if (layout.drawTitle)
+                mTextSprites.drawTextOnLine(mTarget, layout.title, layout.titleStart.x, layout.titleStart.y, layout.titleStop.x, layout.titleStop.y
+                        , layout.titleHOffset, layout.titleVOffset, mTextBrush);
 
-            if (!mAmbientMode)
-                mCanvas.drawArc(floatingPointBounds, eventStartAngle, eventDuration, true, mPiePaint);
+        }
+    }
 
-            // calculate initial text gradient (subject to change, later down the road)
+    /**
+     * The time left till the next event changes every minute, so it is drawn on top of the cached pie layer
+     */
+    private void drawTimeLeft() {
+        // only the next event gets the time left
+        if (mNextEvent < 0 || mNextEvent >= mEventLayoutCount)
+            return;
 
-            // variable fading for text when pie piece gets small
-            float fading_threshold = 0.8f;
-            fading_threshold = Math.min(fading_threshold, (fading_threshold / 30) * eventDuration);
-            float color_threshold = 0.6f;
-            color_threshold = Math.min(color_threshold, (color_threshold / 30) * eventDuration);
+        EventLayout layout = mEventLayouts.get(mNextEvent);
+        if (layout.canDrawTime) {
+            mTimeLeftTextBrush.setTextAlign(layout.timeAlign);
+            mTextSprites.drawTextOnLine(mTarget, layout.getInTimeText(mNowEpochMinutes)
+                    , layout.timeStart.x, layout.timeStart.y, layout.timeStop.x, layout.timeStop.y
+                    , layout.timeHOffset
+                    , layout.timeVOffset
+                    , mTimeLeftTextBrush);
+        }
+    }
 
-            if (mAmbientMode) {
-                color_threshold = 0.7f;
-                fading_threshold = 0.9f;
+    /**
+     * Brings the event layouts up to date. All of them get rebuilt when the events, bounds, ambient mode or the next
+     * event changed, otherwise only an ongoing event whose clipping moved with the current time is rebuilt.
+     *
+     * @return whether any layout changed
+     */
+    private boolean updateEventLayouts() {
+        EventStore events = mEventSnapshot.events;
+        boolean rebuildAll = mLayoutSnapshotVersion != mEventSnapshot.version
+                || mLayoutConfig != mConfig
+                || mLayoutAmbientMode != mAmbientMode
+                || mLayoutNextEvent != mNextEvent;
+
+        boolean changed = rebuildAll;
+        if (rebuildAll) {
+            mLayoutSnapshotVersion = mEventSnapshot.version;
+            mLayoutConfig = mConfig;
+            mLayoutAmbientMode = mAmbientMode;
+            mLayoutNextEvent = mNextEvent;
+
+            while (mEventLayouts.size() < events.size())
+                mEventLayouts.add(new EventLayout());
+            mEventLayoutCount = events.size();
+            if (mActiveEvents.length < mEventLayoutCount)
+                mActiveEvents = new int[mEventLayoutCount];
+
+            for (int i = 0; i < mEventLayoutCount; i++) {
+                RenderStats.count(RenderStats.COUNT_LAYOUTS);
+                layoutEvent(mEventLayouts.get(i), events, i);
             }
+        } else {
+            // an event that has just ended, or was when the layouts were built, is unclipped again
+            for (int i = 0; i < mActiveEventCount; i++)
+                changed |= updateClipping(events, mActiveEvents[i]);
+        }
 
-            float[] positions = {color_threshold, fading_threshold, fading_threshold};
-            int[] colors = {Color.WHITE, mAmbientMode ? Color.TRANSPARENT : event.displayColor, Color.TRANSPARENT};
-            LinearGradient textGradient;
-
-            // title text
-            Path eventTitlePath = new Path();
-            float titleTextVOffset;
-            float titleTextHOffset;
-            Point edgePoint;
-
-            // time path
-            Path eventTimePath = new Path();
-            float timePathVOffset;
-            float timePathHOffset;
-
-            if (event.drawTitleOnStartingEdge) {
-                edgePoint = startPoint;
-
-                textGradient = new LinearGradient(edgePoint.x, edgePoint.y, mWatchFaceCenter.x, mWatchFaceCenter.y, colors, positions, Shader.TileMode.MIRROR);
-
-                if ((event.startAngle >= 270 && event.startAngle <= 360) || (event.startAngle >= 0 && event.startAngle < 90)) {
-                    // drawing text on the starting edge when you're in the first half of circle
-                    mTextPaint.setTextAlign(Paint.Align.RIGHT);
-                    eventTitlePath.moveTo(mWatchFaceCenter.x, mWatchFaceCenter.y);
-                    eventTitlePath.lineTo(edgePoint.x, edgePoint.y);
-                    titleTextVOffset = PieUtils.getPixelsForDips(mContext, 15);
-                    titleTextHOffset = PieUtils.getPixelsForDips(mContext, -5);
-
-                    float measureText = mTextPaint.measureText(event.title);
-                    if (measureText > 170) {
-                        mTextPaint.setTextAlign(Paint.Align.LEFT);
-                        titleTextHOffset = PieUtils.getPixelsForDips(mContext, 28);
-
-                        // invert the text gradient
-                        positions = new float[]{0.8f, 1.f, 1.f};
-                        textGradient = new LinearGradient(mWatchFaceCenter.x, mWatchFaceCenter.y, edgePoint.x, edgePoint.y, colors, positions, Shader.TileMode.MIRROR);
-                    }
-
-                    // drawing time text on the ending edge when you're in the first half of circle
-                    mTimeLeftTextPaint.setTextAlign(Paint.Align.RIGHT);
-                    eventTimePath.moveTo(mWatchFaceCenter.x, mWatchFaceCenter.y);
-                    eventTimePath.lineTo(endPoint.x, endPoint.y);
-
-                    timePathVOffset = PieUtils.getPixelsForDips(mContext, -5);
-                    timePathHOffset = PieUtils.getPixelsForDips(mContext, -5);
-                } else {
-                    // drawing text on the starting edge when you're in the second half of circle
-                    mTextPaint.setTextAlign(Paint.Align.LEFT);
-                    eventTitlePath.moveTo(edgePoint.x, edgePoint.y);
-                    eventTitlePath.lineTo(mWatchFaceCenter.x, mWatchFaceCenter.y);
-                    titleTextVOffset = PieUtils.getPixelsForDips(mContext, -5);
-                    titleTextHOffset = PieUtils.getPixelsForDips(mContext, 5);
-
-                    // drawing time text on the ending edge when you're in the second half of circle
-                    mTimeLeftTextPaint.setTextAlign(Paint.Align.LEFT);
-                    eventTimePath.moveTo(endPoint.x, endPoint.y);
-                    eventTimePath.lineTo(mWatchFaceCenter.x, mWatchFaceCenter.y);
-
-                    timePathVOffset = PieUtils.getPixelsForDips(mContext, 15);
-                    timePathHOffset = PieUtils.getPixelsForDips(mContext, 7);
-                }
-            } else {
-                edgePoint = endPoint;
-
-                textGradient = new LinearGradient(edgePoint.x, edgePoint.y, mWatchFaceCenter.x, mWatchFaceCenter.y, colors, positions, Shader.TileMode.MIRROR);
-
-                if (event.endAngle >= 90 && event.endAngle < 270) {
-                    // drawing text on the ending edge when you're in the second half of circle
-                    eventTitlePath.moveTo(edgePoint.x, edgePoint.y);
-                    eventTitlePath.lineTo(mWatchFaceCenter.x, mWatchFaceCenter.y);
-                    mTextPaint.setTextAlign(Paint.Align.LEFT);
-                    titleTextVOffset = PieUtils.getPixelsForDips(mContext, 15);
-                    titleTextHOffset = PieUtils.getPixelsForDips(mContext, 5);
-
-                    // drawing time text on the starting edge when you're in the second half of circle
-                    mTimeLeftTextPaint.setTextAlign(Paint.Align.RIGHT);
-                    eventTimePath.moveTo(mWatchFaceCenter.x, mWatchFaceCenter.y);
-                    eventTimePath.lineTo(startPoint.x, startPoint.y);
-
-                    timePathVOffset = PieUtils.getPixelsForDips(mContext, 15);
-                    timePathHOffset = PieUtils.getPixelsForDips(mContext, 5);
-                } else {
-                    // drawing text on the ending edge when you're in the first half of circle
-                    eventTitlePath.moveTo(mWatchFaceCenter.x, mWatchFaceCenter.y);
-                    eventTitlePath.lineTo(edgePoint.x, edgePoint.y);
-                    mTextPaint.setTextAlign(Paint.Align.RIGHT);
-                    titleTextVOffset = PieUtils.getPixelsForDips(mContext, -5);
-                    titleTextHOffset = PieUtils.getPixelsForDips(mContext, -5);
-
-                    float measureText = mTextPaint.measureText(event.title);
-                    if (measureText > 170) {
-                        mTextPaint.setTextAlign(Paint.Align.LEFT);
-                        titleTextHOffset = PieUtils.getPixelsForDips(mContext, 28);
-
-                        // invert the text gradient
-                        positions = new float[]{0.8f, 1.f, 1.f};
-                        textGradient = new LinearGradient(mWatchFaceCenter.x, mWatchFaceCenter.y, edgePoint.x, edgePoint.y, colors, positions, Shader.TileMode.MIRROR);
-                    }
-
-                    // drawing time text on the starting edge when you're in the first half of circle
-                    mTimeLeftTextPaint.setTextAlign(Paint.Align.RIGHT);
-                    eventTimePath.moveTo(mWatchFaceCenter.x, mWatchFaceCenter.y);
-                    eventTimePath.lineTo(startPoint.x, startPoint.y);
-
-                    timePathVOffset = PieUtils.getPixelsForDips(mContext, 15);
-                    timePathHOffset = PieUtils.getPixelsForDips(mContext, -7);
-                }
-            }
+        mActiveEventCount = events.findActive(mNowMillis, mActiveEvents);
+        if (!rebuildAll) {
+            for (int i = 0; i < mActiveEventCount; i++)
+                changed |= updateClipping(events, mActiveEvents[i]);
+        }
 
-            mTextPaint.setShader(textGradient);
+        return changed;
+    }
 
-            if (mAmbientMode || eventDuration > MIN_DEG_FOR_TITLE)
-                mCanvas.drawTextOnPath(event.title, eventTitlePath, titleTextHOffset, titleTextVOffset, mTextPaint);
+    private boolean updateClipping(EventStore events, int i) {
+        EventLayout layout = mEventLayouts.get(i);
+        if (!layout.needsClippingUpdate(mNowLocalMinutes))
+            return false;
 
-            CalendarEvent nxt = CalendarEvent.nextEvent;
-            boolean canDrawNextEventInTime = nxt != null && nxt.equals(event);
-            if (!mAmbientMode && canDrawNextEventInTime && eventDuration > (MIN_DEG_FOR_TITLE * 2))
-                mCanvas.drawTextOnPath(event.getInTimeString(), eventTimePath
-                        , timePathHOffset
-                        , timePathVOffset
-                        , mTimeLeftTextPaint);
-        }
+        RenderStats.count(RenderStats.COUNT_LAYOUTS);
+        layoutEvent(layout, events, i);
+        return true;
     }
 
-    public void drawBgImage() {
-        if (mBackgroundImg == null)
-            mBackgroundImg = Bitmap.createScaledBitmap(
-                    BitmapFactory.decodeResource(mContext.getResources(), R.drawable.bg)
-                    , mWatchFaceBounds.width()
-                    , mWatchFaceBounds.height()
-                    , true /* filter */
-            );
+    private void layoutEvent(EventLayout layout, EventStore events, int i) {
+        layout.layout(events, i, mNowLocalMinutes, mAmbientMode
+                , i == mNextEvent
+                , mConfig
+                , mTarget
+                , mTextBrush);
+    }
 
-        mCanvas.drawBitmap(mBackgroundImg, 0, 0, null);
+    private void drawBgImage(Bitmap background) {
+        if (background != null)
+            mTarget.drawBitmap(background, 0, 0);
+        else
+            mTarget.clear(BACKGROUND_FILL_COLOR);
     }
 
     private void drawHorizon() {
         if (mAmbientMode)
             return;
 
-        int horizonSeparatorLength = 40;
-        int[] colors = {Color.TRANSPARENT, Color.BLACK};
-
-        // find out at what angle the gradient needs to start
-        float startAngle = (mCurrentAngle - horizonSeparatorLength);
+        // pointing at 3 o'clock, the separator ends there and spans the part of the quarter above it
+        mHorizonRadius = mConfig.dialBounds.width() / 2;
+        float top = -mHorizonRadius * (float) Math.sin(Math.toRadians(HORIZON_SEPARATOR_LENGTH));
+        mHorizonSprite.setExtent(0, top, mHorizonRadius, 0);
 
-        // if we the start is negative, it means we'll have to "go around"
-        if (startAngle < 0) startAngle += 360;
-
-        // the gradient starts at the beginning of the sweep, but has to end at the defined horizon separator length
-        float[] positions = {0, horizonSeparatorLength / 360f};
-        SweepGradient horizonGradient = new SweepGradient(mWatchFaceCenter.x, mWatchFaceCenter.y, colors, positions);
+        mHorizonSprite.draw(mTarget, mConfig.center.x, mConfig.center.y, mCurrentAngle);
+    }
 
-        // the sweep gradient doesn't like drawing starting from a value before the 0 point (3 o clock) to after,
-        // that's why we need a "local" matrix for the gradient, which we can first rotate to always have our start be 0
-        Matrix gradientMatrix = new Matrix();
+    /**
+     * Paints the horizon separator ending at 3 o'clock, only when its sprite gets rendered
+     */
+    private void paintHorizon(RenderTarget target, float centerX, float centerY) {
+        float startAngle = -HORIZON_SEPARATOR_LENGTH;
 
-        // we'll rotate one degree back, because for some reason there is a weird striped border at the start,
+        // the gradient starts at the beginning of the sweep, but has to end at the defined horizon separator length.
+        // we'll start it one degree back, because for some reason there is a weird striped border at the start,
         // which we do not want to see.
-        float rotateAngle = startAngle - 1;
-        if (rotateAngle < 0) rotateAngle += 360;
-
-        // do the actual rotate and assign the matrix to the gradient
-        gradientMatrix.preRotate(rotateAngle, mWatchFaceCenter.x, mWatchFaceCenter.y);
-        horizonGradient.setLocalMatrix(gradientMatrix);
-
-        // assign the gradient shader to the horizon
-        mHorizonPaint.setShader(horizonGradient);
+        int[] colors = {Color.TRANSPARENT, Color.BLACK};
+        float[] positions = {0, HORIZON_SEPARATOR_LENGTH / 360f};
+        mHorizonBrush.setGradient(Gradient.sweep(centerX, centerY, startAngle - 1, colors, positions));
 
-        // draw the horizon arc
-        mCanvas.drawArc(new RectF(mWatchFaceBounds)
+        target.drawArc(centerX - mHorizonRadius, centerY - mHorizonRadius, centerX + mHorizonRadius, centerY + mHorizonRadius
                 , startAngle
-                , horizonSeparatorLength
-                , true
-                , mHorizonPaint);
+                , HORIZON_SEPARATOR_LENGTH
+                , mHorizonBrush);
     }
 
     /**
-     * Updates the calendar events, usually should be called once every minute
+     * Forces the next frame to be drawn again instead of blitting the last one
+     */
+    public void invalidate() {
+        mFrameFingerprint.invalidate();
+    }
+
+    /**
+     * Requests an asynchronous update of the calendar events when a boundary has passed without the loader
+     * waking up for it, e.g. during deep sleep. Cheap enough for every time tick, which otherwise only moves
+     * the hand. The new events are picked up by the first draw() call after the loader has published them.
      */
     public void fetchCalendarEvents() {
-        this.mAllCalendarEvents = CalendarEvent.allEvents(mContext);
+        mEventLoader.refreshIfNeeded();
+    }
+
+    /**
+     * Call when the time zone or the system time has been changed, once the time engine has been refreshed:
+     * everything laid out in local time gets rebuilt on the next draw, and the events are loaded again for the
+     * new window.
+     */
+    public void onTimeChanged() {
+        mLayoutSnapshotVersion = -1;
+        mFrameFingerprint.invalidate();
+        mAmbientRenderer.invalidate();
+
+        // a shared loader gets told by its repository, once for all faces
+        if (mOwnsSources)
+            mEventLoader.requestLoad();
+    }
+
+    /**
+     * Releases the layers and, unless they are shared, the loader and the background image, the watch face
+     * can't be used after this call
+     */
+    public void destroy() {
+        if (mOwnsSources) {
+            mEventLoader.quit();
+            mBackgroundImage.release();
+        }
+        mPieLayer.release();
+        mTextSprites.release();
+        mAmbientRenderer.release();
+        mHorizonSprite.release();
+        mFrame.release();
     }
 
     private void createPaintBrushes() {
         // the brush used to paint the pie pieces
-        mPiePaint = new Paint();
-        mPiePaint.setARGB(120, 100, 240, 200);
-        mPiePaint.setStrokeWidth(5.0f);
-        mPiePaint.setAntiAlias(true);
-        mPiePaint.setStrokeCap(Paint.Cap.ROUND);
-        mPiePaint.setShadowLayer(10.0f, 0.0f, 2.0f, 0xFF000000);
+        mPieBrush = new Brush();
+        mPieBrush.setColor(Color.argb(120, 100, 240, 200));
+        mPieBrush.setStrokeWidth(5.0f);
+        mPieBrush.setAntiAlias(true);
+        mPieBrush.setRoundCap(true);
+        mPieBrush.setShadow(10.0f, 0.0f, 2.0f, 0xFF000000);
 
         // the brush used to paint the text on the pie pieces
-        mTextPaint = new Paint();
-        mTextPaint.setColor(Color.WHITE);
-        mTextPaint.setStrokeWidth(5.0f);
-        mTextPaint.setAntiAlias(true);
-        mTextPaint.setStrokeCap(Paint.Cap.ROUND);
-        mTextPaint.setTextSize(24);
-        Typeface plain = Typeface.create("sans-serif-condensed", Typeface.NORMAL);
-        mTextPaint.setTypeface(plain);
+        mTextBrush = new Brush();
+        mTextBrush.setColor(Color.WHITE);
+        mTextBrush.setStrokeWidth(5.0f);
+        mTextBrush.setAntiAlias(true);
+        mTextBrush.setRoundCap(true);
+        mTextBrush.setFont("sans-serif-condensed", Brush.FONT_NORMAL);
 
         // the brush used to paint the time left till next event piece
-        mTimeLeftTextPaint = new Paint(mTextPaint);
-        mTimeLeftTextPaint.setTextSize(19);
-        mTimeLeftTextPaint.setTypeface(Typeface.create(Typeface.DEFAULT, Typeface.ITALIC));
+        mTimeLeftTextBrush = new Brush(mTextBrush);
+        mTimeLeftTextBrush.setFont(null, Brush.FONT_ITALIC);
 
         // the brush used to paint the hour markers and current time marker
-        mDialPaint = new Paint();
-        mDialPaint.setColor(Color.WHITE);
-        mDialPaint.setAlpha(180);
-        mDialPaint.setStrokeWidth(6.0f);
-        mDialPaint.setAntiAlias(true);
-        mDialPaint.setStrokeCap(Paint.Cap.ROUND);
-        mDialPaint.setShadowLayer(10.0f, 0.0f, 2.0f, 0xFF000000);
+        mDialBrush = new Brush();
+        mDialBrush.setColor(Color.WHITE);
+        mDialBrush.setAlpha(180);
+        mDialBrush.setStrokeWidth(6.0f);
+        mDialBrush.setAntiAlias(true);
+        mDialBrush.setRoundCap(true);
+        mDialBrush.setShadow(10.0f, 0.0f, 2.0f, 0xFF000000);
 
         // the brush used to paint the hour markers and current time marker
-        mDotPaint = new Paint();
-        mDotPaint.setColor(Color.parseColor("#C9C9C9"));
-        mDotPaint.setAlpha(255);
-        mDotPaint.setStrokeWidth(6.0f);
-        mDotPaint.setAntiAlias(true);
-        mDotPaint.setStrokeCap(Paint.Cap.ROUND);
-        mDotPaint.setShadowLayer(10.0f, 0.0f, 2.0f, 0xFF000000);
+        mDotBrush = new Brush();
+        mDotBrush.setColor(Color.parseColor("#C9C9C9"));
+        mDotBrush.setAlpha(255);
+        mDotBrush.setStrokeWidth(6.0f);
+        mDotBrush.setAntiAlias(true);
+        mDotBrush.setRoundCap(true);
+        mDotBrush.setShadow(10.0f, 0.0f, 2.0f, 0xFF000000);
 
         // the brush used to paint the horizon separator
-        mHorizonPaint = new Paint();
-        mHorizonPaint.setColor(Color.BLACK);
-        mHorizonPaint.setStrokeWidth(5.0f);
-        mHorizonPaint.setAntiAlias(true);
-        mHorizonPaint.setStrokeCap(Paint.Cap.ROUND);
+        mHorizonBrush = new Brush();
+        mHorizonBrush.setColor(Color.BLACK);
+        mHorizonBrush.setStrokeWidth(5.0f);
+        mHorizonBrush.setAntiAlias(true);
+        mHorizonBrush.setRoundCap(true);
+
+        // the brush used to paint the peek card background in ambient mode
+        mPeekCardBrush = new Brush();
+    }
+
+    // the brushes stay, only their text sizes follow the dial
+    private void applyConfig(RenderConfig config) {
+        mConfig = config;
+        mTextBrush.setTextSize(config.titleTextSize);
+        mTimeLeftTextBrush.setTextSize(config.timeLeftTextSize);
+    }
+
+    /**
+     * @param bottomInset the height of the chin at the bottom of the screen that can't show anything, or 0
+     */
+    public void setBottomInset(int bottomInset) {
+        if (this.mBottomInset == bottomInset)
+            return;
+
+        this.mBottomInset = bottomInset;
+        mFrameFingerprint.invalidate();
+    }
+
+    /**
+     * @param smoothSweep whether the hand and horizon move on within the minute, for frames drawn more than once a minute
+     */
+    public void setSmoothSweep(boolean smoothSweep) {
+        this.mSmoothSweep = smoothSweep;
     }
 
     public void setLowBitAmbientMode(boolean lowBitAmbientMode) {
-        this.mLowBitAmbientMode = lowBitAmbientMode;
+        mAmbientRenderer.setLowBitAmbientMode(lowBitAmbientMode);
     }
 
 
@@ -421,7 +598,7 @@ public class PieWatchFace {
     //
 
     public void setBurnInProtectionMode(boolean burnInProtectionMode) {
-        this.mBurnInProtectionMode = burnInProtectionMode;
+        mAmbientRenderer.setBurnInProtectionMode(burnInProtectionMode);
     }
 
     // for easy use, the primary positions of the dial
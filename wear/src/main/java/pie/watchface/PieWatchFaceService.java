@@ -3,10 +3,15 @@ package pie.watchface;
 import android.graphics.Canvas;
 import android.graphics.Rect;
 import android.os.Bundle;
+import android.os.Debug;
 import android.support.wearable.watchface.CanvasWatchFaceService;
 import android.support.wearable.watchface.WatchFaceStyle;
 import android.util.Log;
 import android.view.SurfaceHolder;
+import android.view.WindowInsets;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 
 /**
  * Created by Yannick Grossard on 13/04/15.
@@ -15,12 +20,27 @@ public class PieWatchFaceService extends CanvasWatchFaceService {
 
     public static final String TAG = PieWatchFaceService.class.getSimpleName();
 
+    // the smooth sweep of the hand and horizon while interactive, and the share of CPU time it may take
+    private static final int SMOOTH_SWEEP_FRAME_RATE = 15;
+    private static final float SMOOTH_SWEEP_CPU_BUDGET = 0.05f;
+
     @Override
     public PieWatchFaceEngine onCreateEngine() {
         Log.i(TAG, "onCreateEngine()");
+        RenderStats.updateLevelFromLogTag();
         return new PieWatchFaceEngine();
     }
 
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+
+        // dumpsys activity service pie.watchface.PieWatchFaceService [reset]
+        RenderStats.dump(writer);
+        if (args != null && args.length > 0 && "reset".equals(args[0]))
+            RenderStats.reset();
+    }
+
 
     // implement service callback methods
     class PieWatchFaceEngine extends CanvasWatchFaceService.Engine {
@@ -29,6 +49,29 @@ public class PieWatchFaceService extends CanvasWatchFaceService {
 
         private PieWatchFace mWatchFace;
 
+        // drives the redraws in between time ticks while the face is visible and interactive
+        private FrameScheduler mFrameScheduler;
+
+        // the next draw is one the scheduler asked for, only those are measured against its budget
+        private boolean mFrameRequested;
+
+        // the events and background image, shared with the other engines of the process
+        private EventRepository mRepository;
+        private final EventRepository.Listener mRepositoryListener = new EventRepository.Listener() {
+            @Override
+            public void onRepositoryChanged() {
+                // new events or the background image are available, redraw
+                invalidate();
+            }
+
+            @Override
+            public void onTimeChanged() {
+                // the repository refreshed the time and loads the events again, this engine lays them out again
+                mWatchFace.onTimeChanged();
+                invalidate();
+            }
+        };
+
         @Override
         public void onCreate(SurfaceHolder holder) {
             super.onCreate(holder);
@@ -40,7 +83,26 @@ public class PieWatchFaceService extends CanvasWatchFaceService {
                     .setShowSystemUiTime(false)
                     .build());
 
-            mWatchFace = new PieWatchFace(PieWatchFaceService.this);
+            mRepository = EventRepository.acquire(PieWatchFaceService.this);
+            mRepository.addListener(mRepositoryListener);
+            mWatchFace = new PieWatchFace(PieWatchFaceService.this, mRepository.getEventLoader(), mRepository.getBackgroundImage());
+
+            mFrameScheduler = new FrameScheduler(new FrameScheduler.Callback() {
+                @Override
+                public void onFrame() {
+                    mFrameRequested = true;
+                    invalidate();
+                }
+            }, SMOOTH_SWEEP_FRAME_RATE, SMOOTH_SWEEP_CPU_BUDGET);
+        }
+
+        @Override
+        public void onDestroy() {
+            mFrameScheduler.setRunning(false);
+            mWatchFace.destroy();
+            mRepository.removeListener(mRepositoryListener);
+            mRepository.release();
+            super.onDestroy();
         }
 
         @Override
@@ -52,6 +114,14 @@ public class PieWatchFaceService extends CanvasWatchFaceService {
             mWatchFace.setBurnInProtectionMode(properties.getBoolean(PROPERTY_BURN_IN_PROTECTION, false));
         }
 
+        @Override
+        public void onApplyWindowInsets(WindowInsets insets) {
+            super.onApplyWindowInsets(insets);
+
+            // the flat bottom of some round screens, the dial moves up above it
+            mWatchFace.setBottomInset(insets.getSystemWindowInsetBottom());
+        }
+
         @Override
         public void onTimeTick() {
             super.onTimeTick();
@@ -65,6 +135,7 @@ public class PieWatchFaceService extends CanvasWatchFaceService {
 
             Log.i(TAG, "onAmbientModeChanged(), inAmbientMode: " + inAmbientMode);
 
+            updateFrameScheduler();
             invalidate();
         }
 
@@ -72,9 +143,21 @@ public class PieWatchFaceService extends CanvasWatchFaceService {
         public void onDraw(Canvas canvas, Rect bounds) {
             super.onDraw(canvas, bounds);
 
-            Log.i(TAG, "onDraw() canvas draw, bounds: " + bounds);
+            // time ticks, new events and the like draw unmeasured, they come on top of the scheduler's frames
+            boolean frameRequested = mFrameRequested;
+            mFrameRequested = false;
+            if (!frameRequested || !mFrameScheduler.isRunning()) {
+                mWatchFace.draw(canvas, bounds, getPeekCardPosition(), isInAmbientMode());
+                return;
+            }
 
+            long start = Debug.threadCpuTimeNanos();
             mWatchFace.draw(canvas, bounds, getPeekCardPosition(), isInAmbientMode());
+            mFrameScheduler.onFrameDrawn(Debug.threadCpuTimeNanos() - start, System.nanoTime());
+
+            // the scheduler gives up when even its lowest frame rate is over budget
+            if (!mFrameScheduler.isRunning())
+                mWatchFace.setSmoothSweep(false);
         }
 
         @Override
@@ -94,8 +177,18 @@ public class PieWatchFaceService extends CanvasWatchFaceService {
             Log.i(TAG, "onVisibilityChanged(), visible:" + visible);
 
             /* the watch face became visible or invisible */
+            updateFrameScheduler();
             invalidate();
         }
 
+        /**
+         * Smooth frames only run while they can be seen, never in ambient mode
+         */
+        private void updateFrameScheduler() {
+            boolean smoothSweep = isVisible() && !isInAmbientMode();
+            mFrameScheduler.setRunning(smoothSweep);
+            mWatchFace.setSmoothSweep(smoothSweep);
+        }
+
     }
 }
@@ -0,0 +1,83 @@
+package pie.watchface;
+
+import android.content.Context;
+import android.graphics.PointF;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Every dimension the face is drawn with, computed once for a density, the bounds and the screen's shape, so the
+ * draw code only reads fields. A new one is made when the bounds or the insets change.
+ * <p>
+ * The dial is the largest circle that fits the visible part of the screen: on a screen with a flat bottom, a chin,
+ * it sits above it, the background still fills the whole bounds. Round and square screens both get the inscribed
+ * circle. The text sizes were tuned for a dial of {@link #REFERENCE_DIAL_SIZE} pixels and scale with the dial,
+ * all other dimensions are in dips.
+ */
+public final class RenderConfig {
+
+    // the dial size the text sizes in pixels were tuned for
+    public static final float REFERENCE_DIAL_SIZE = 320;
+
+    private static final float TITLE_TEXT_SIZE = 24;
+    private static final float TIME_LEFT_TEXT_SIZE = 19;
+    private static final float LONG_TITLE_WIDTH = 170;
+
+    // what it was computed for
+    public final Rect bounds;
+    public final int bottomInset;
+
+    // the square the dial fits in, its center and the projection of the dial positions
+    public final RectF dialBounds;
+    public final PointF center;
+    public final float radius;
+    public final CircleProjection dial;
+
+    // the clock
+    public final float centerDotRadius;
+    public final float markerLength;
+    public final float burnInShiftUnit;
+
+    // the event titles and the time left, the offsets are applied along and across the line the text is drawn on
+    public final float titleTextSize;
+    public final float timeLeftTextSize;
+    public final float longTitleWidth;
+    public final float textOffsetAbove;
+    public final float textOffsetBelow;
+    public final float textOffsetAlong;
+    public final float timeOffsetAlong;
+    public final float longTitleOffsetAlong;
+
+    /**
+     * @param bottomInset the height of the chin at the bottom of the screen that can't show anything, or 0
+     */
+    public RenderConfig(Context context, Rect bounds, int bottomInset) {
+        this.bounds = new Rect(bounds);
+        this.bottomInset = bottomInset;
+
+        int size = Math.min(bounds.width(), bounds.height() - bottomInset);
+        float left = bounds.left + (bounds.width() - size) / 2f;
+        this.dialBounds = new RectF(left, bounds.top, left + size, bounds.top + size);
+        this.center = new PointF(dialBounds.centerX(), dialBounds.centerY());
+        this.radius = size / 2;
+        this.dial = new CircleProjection(radius, center.x, center.y);
+
+        this.centerDotRadius = PieUtils.getPixelsForDips(context, 5);
+        this.markerLength = PieUtils.getPixelsForDips(context, 10);
+        this.burnInShiftUnit = PieUtils.getPixelsForDips(context, 1);
+
+        float textScale = size / REFERENCE_DIAL_SIZE;
+        this.titleTextSize = TITLE_TEXT_SIZE * textScale;
+        this.timeLeftTextSize = TIME_LEFT_TEXT_SIZE * textScale;
+        this.longTitleWidth = LONG_TITLE_WIDTH * textScale;
+        this.textOffsetAbove = PieUtils.getPixelsForDips(context, 5);
+        this.textOffsetBelow = PieUtils.getPixelsForDips(context, 15);
+        this.textOffsetAlong = PieUtils.getPixelsForDips(context, 5);
+        this.timeOffsetAlong = PieUtils.getPixelsForDips(context, 7);
+        this.longTitleOffsetAlong = PieUtils.getPixelsForDips(context, 28);
+    }
+
+    public boolean matches(Rect bounds, int bottomInset) {
+        return this.bounds.equals(bounds) && this.bottomInset == bottomInset;
+    }
+}
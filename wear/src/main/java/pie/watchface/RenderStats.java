@@ -0,0 +1,163 @@
+package pie.watchface;
+
+import android.util.Log;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Process-wide frame time instrumentation: timers with fixed-bucket histograms and plain counters.
+ * Everything is off by default and costs a single volatile read per call in that case. Enable it with
+ * <pre>
+ * adb shell setprop log.tag.PieStats DEBUG     (counters)
+ * adb shell setprop log.tag.PieStats VERBOSE   (counters and timers)
+ * </pre>
+ * and read it with {@code adb shell dumpsys activity service pie.watchface.PieWatchFaceService}.
+ */
+public final class RenderStats {
+
+    public static final String TAG = "PieStats";
+
+    public static final int LEVEL_OFF = 0;
+    public static final int LEVEL_COUNTERS = 1;
+    public static final int LEVEL_TIMERS = 2;
+
+    // timers
+    public static final int TIMER_FRAME = 0;
+    public static final int TIMER_BG_IMAGE = 1;
+    public static final int TIMER_EVENTS = 2;
+    public static final int TIMER_HORIZON = 3;
+    public static final int TIMER_BASIC_CLOCK = 4;
+    public static final int TIMER_AMBIENT_FRAME = 5;
+    public static final int TIMER_FETCH_EVENTS = 6;
+    public static final int TIMER_COLD_START = 7;
+    private static final String[] TIMER_NAMES = {
+            "frame", "drawBgImage", "drawEvents", "drawHorizon", "drawBasicClock", "ambientFrame", "fetchCalendarEvents",
+            "coldStartFrame"
+    };
+
+    // counters
+    public static final int COUNT_FRAMES = 0;
+    public static final int COUNT_AMBIENT_FRAMES = 1;
+    public static final int COUNT_PIE_LAYER_HITS = 2;
+    public static final int COUNT_PIE_LAYER_MISSES = 3;
+    public static final int COUNT_AMBIENT_FRAME_HITS = 4;
+    public static final int COUNT_AMBIENT_FRAME_MISSES = 5;
+    public static final int COUNT_LAYOUTS = 6;
+    public static final int COUNT_QUERIES = 7;
+    public static final int COUNT_PRUNES = 8;
+    public static final int COUNT_SNAPSHOTS = 9;
+    public static final int COUNT_SWEEP_FRAMES = 10;
+    public static final int COUNT_FRAME_RATE_DROPS = 11;
+    public static final int COUNT_TEXT_SPRITE_HITS = 12;
+    public static final int COUNT_TEXT_SPRITE_MISSES = 13;
+    public static final int COUNT_RANGE_QUERIES = 14;
+    public static final int COUNT_RESTORED_SNAPSHOTS = 15;
+    public static final int COUNT_SPRITE_RENDERS = 16;
+    public static final int COUNT_RENDERED_FRAMES = 17;
+    public static final int COUNT_SKIPPED_FRAMES = 18;
+    public static final int COUNT_BOUNDARY_REFRESHES = 19;
+    private static final String[] COUNTER_NAMES = {
+            "frames", "ambientFrames", "pieLayerHits", "pieLayerMisses", "ambientFrameHits", "ambientFrameMisses",
+            "eventLayouts", "providerQueries", "snapshotPrunes", "publishedSnapshots", "sweepFrames", "frameRateDrops",
+            "textSpriteHits", "textSpriteMisses", "rangeQueries", "restoredSnapshots", "spriteRenders",
+            "renderedFrames", "skippedFrames", "boundaryRefreshes"
+    };
+
+    // upper bounds of the histogram buckets in microseconds, the last bucket takes everything above
+    private static final long[] BUCKET_BOUNDS_MICROS = {100, 250, 500, 1000, 2500, 5000, 10000, 16000, 33000, 100000};
+    private static final int BUCKET_COUNT = BUCKET_BOUNDS_MICROS.length + 1;
+
+    private static volatile int sLevel = LEVEL_OFF;
+
+    private static final AtomicLongArray sCounters = new AtomicLongArray(COUNTER_NAMES.length);
+    private static final AtomicLongArray sBuckets = new AtomicLongArray(TIMER_NAMES.length * BUCKET_COUNT);
+    private static final AtomicLongArray sTotalNanos = new AtomicLongArray(TIMER_NAMES.length);
+    private static final AtomicLongArray sMaxNanos = new AtomicLongArray(TIMER_NAMES.length);
+
+    private RenderStats() {
+    }
+
+    /**
+     * Picks up the level from the log tag property, see the class documentation
+     */
+    public static void updateLevelFromLogTag() {
+        if (Log.isLoggable(TAG, Log.VERBOSE)) sLevel = LEVEL_TIMERS;
+        else if (Log.isLoggable(TAG, Log.DEBUG)) sLevel = LEVEL_COUNTERS;
+        else sLevel = LEVEL_OFF;
+    }
+
+    public static void setLevel(int level) {
+        sLevel = level;
+    }
+
+    public static int getLevel() {
+        return sLevel;
+    }
+
+    public static void count(int counter) {
+        if (sLevel >= LEVEL_COUNTERS)
+            sCounters.incrementAndGet(counter);
+    }
+
+    /**
+     * @return the start time to pass to {@link #stopTimer(int, long)}, 0 when timers are disabled
+     */
+    public static long startTimer() {
+        return sLevel >= LEVEL_TIMERS ? System.nanoTime() : 0;
+    }
+
+    public static void stopTimer(int timer, long startNanos) {
+        if (startNanos == 0)
+            return;
+
+        long nanos = System.nanoTime() - startNanos;
+        long micros = nanos / 1000;
+
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MICROS.length && micros > BUCKET_BOUNDS_MICROS[bucket])
+            bucket++;
+
+        sBuckets.incrementAndGet(timer * BUCKET_COUNT + bucket);
+        sTotalNanos.addAndGet(timer, nanos);
+
+        long max;
+        do {
+            max = sMaxNanos.get(timer);
+        } while (nanos > max && !sMaxNanos.compareAndSet(timer, max, nanos));
+    }
+
+    public static void reset() {
+        for (int i = 0; i < sCounters.length(); i++) sCounters.set(i, 0);
+        for (int i = 0; i < sBuckets.length(); i++) sBuckets.set(i, 0);
+        for (int i = 0; i < sTotalNanos.length(); i++) sTotalNanos.set(i, 0);
+        for (int i = 0; i < sMaxNanos.length(); i++) sMaxNanos.set(i, 0);
+    }
+
+    public static void dump(PrintWriter writer) {
+        writer.println("RenderStats level: " + sLevel);
+
+        writer.println("counters:");
+        for (int i = 0; i < COUNTER_NAMES.length; i++)
+            writer.println(String.format(Locale.US, "  %-22s %d", COUNTER_NAMES[i], sCounters.get(i)));
+
+        writer.print(String.format(Locale.US, "timers (us):  %-20s %8s %8s %8s", "", "count", "avg", "max"));
+        for (long bound : BUCKET_BOUNDS_MICROS)
+            writer.print(String.format(Locale.US, " %7s", "<=" + bound));
+        writer.println(String.format(Locale.US, " %7s", ">"));
+
+        for (int timer = 0; timer < TIMER_NAMES.length; timer++) {
+            long count = 0;
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+                count += sBuckets.get(timer * BUCKET_COUNT + bucket);
+
+            writer.print(String.format(Locale.US, "  %-32s %8d %8d %8d", TIMER_NAMES[timer], count
+                    , count == 0 ? 0 : sTotalNanos.get(timer) / count / 1000
+                    , sMaxNanos.get(timer) / 1000));
+            for (int bucket = 0; bucket < BUCKET_COUNT; bucket++)
+                writer.print(String.format(Locale.US, " %7d", sBuckets.get(timer * BUCKET_COUNT + bucket)));
+            writer.println();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package pie.watchface;
+
+import android.graphics.Bitmap;
+
+/**
+ * The narrow set of drawing operations the watch face needs. {@link CanvasRenderTarget} draws to an
+ * Android canvas, other implementations can draw anywhere else, e.g. into a plain image buffer.
+ * <p>
+ * Angles are in degrees, clockwise, starting at 3 o'clock, the same as for a canvas.
+ */
+public interface RenderTarget {
+
+    // the pixel formats of a layer: translucent, opaque as it is fully covered by whatever gets drawn in it, or
+    // opaque and fine with fewer colors, e.g. 16 bit for half the memory, when nothing in it would band
+    int LAYER_TRANSLUCENT = 0;
+    int LAYER_OPAQUE = 1;
+    int LAYER_OPAQUE_LOW_DEPTH = 2;
+
+    /**
+     * An offscreen surface, created by and drawn with a render target
+     */
+    interface Layer {
+
+        int getWidth();
+
+        int getHeight();
+
+        /**
+         * @return the target to draw into this layer with
+         */
+        RenderTarget getTarget();
+
+        /**
+         * Clears the layer to transparent, or black for an opaque layer
+         */
+        void clear();
+
+        void release();
+    }
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * Fills the whole target with the given color
+     */
+    void clear(int color);
+
+    /**
+     * Draws the pie wedge of the oval between the given angles
+     */
+    void drawArc(float left, float top, float right, float bottom, float startAngle, float sweepAngle, Brush brush);
+
+    void drawLine(float startX, float startY, float stopX, float stopY, Brush brush);
+
+    void drawCircle(float centerX, float centerY, float radius, Brush brush);
+
+    void drawRect(float left, float top, float right, float bottom, Brush brush);
+
+    void drawBitmap(Bitmap bitmap, float left, float top);
+
+    /**
+     * Draws the text along the line from start to stop, the same way text is drawn on a path with a canvas
+     *
+     * @param hOffset the distance along the line added to the text's position
+     * @param vOffset the distance perpendicular to the line, positive is below it
+     */
+    void drawTextOnLine(String text, float startX, float startY, float stopX, float stopY, float hOffset, float vOffset, Brush brush);
+
+    float measureText(String text, Brush brush);
+
+    /**
+     * @return the distance from the baseline to the top of the tallest glyphs, positive
+     */
+    float getTextAscent(Brush brush);
+
+    /**
+     * @return the distance from the baseline to the bottom of the lowest glyphs, positive
+     */
+    float getTextDescent(Brush brush);
+
+    /**
+     * @param format one of the LAYER_ formats
+     */
+    Layer createLayer(int width, int height, int format);
+
+    void drawLayer(Layer layer, float left, float top);
+
+    /**
+     * Draws the layer rotated along the line from start to stop, filtered
+     *
+     * @param x the distance along the line of the layer's left edge
+     * @param y the distance perpendicular to the line of the layer's top edge, positive is below it
+     */
+    void drawLayerOnLine(Layer layer, float startX, float startY, float stopX, float stopY, float x, float y);
+}
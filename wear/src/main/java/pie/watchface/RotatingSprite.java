@@ -0,0 +1,79 @@
+package pie.watchface;
+
+/**
+ * A decoration that only ever turns around a pivot, like the horizon following the time: it gets rendered once,
+ * pointing at 3 o'clock, into a layer, and every frame only blits that layer rotated to the current angle.
+ * The owner sets the extent of the decoration and invalidates the sprite when its look changed.
+ */
+public class RotatingSprite {
+
+    public interface Painter {
+        /**
+         * Draws the decoration pointing at 3 o'clock around the given pivot
+         */
+        void paint(RenderTarget target, float pivotX, float pivotY);
+    }
+
+    // room for the antialiased edges, so the filtering at the layer's border stays transparent
+    private static final int PADDING = 2;
+
+    private final Painter mPainter;
+    private final LayerCache mLayer = new LayerCache(RenderTarget.LAYER_TRANSLUCENT);
+
+    // the extent of the decoration relative to the pivot, while it points at 3 o'clock
+    private float mLeft;
+    private float mTop;
+    private float mRight;
+    private float mBottom;
+
+    public RotatingSprite(Painter painter) {
+        this.mPainter = painter;
+    }
+
+    /**
+     * Sets the extent of the decoration relative to the pivot while it points at 3 o'clock, rendering it again
+     * on the next draw when it changed
+     */
+    public void setExtent(float left, float top, float right, float bottom) {
+        if (left == mLeft && top == mTop && right == mRight && bottom == mBottom)
+            return;
+
+        mLeft = left;
+        mTop = top;
+        mRight = right;
+        mBottom = bottom;
+        mLayer.invalidate();
+    }
+
+    public void invalidate() {
+        mLayer.invalidate();
+    }
+
+    /**
+     * Draws the decoration around the pivot, turned clockwise by the given angle from 3 o'clock
+     */
+    public void draw(RenderTarget target, float pivotX, float pivotY, float degrees) {
+        float originX = (float) Math.floor(mLeft) - PADDING;
+        float originY = (float) Math.floor(mTop) - PADDING;
+
+        if (!mLayer.isValid()) {
+            int width = (int) Math.ceil(mRight - originX) + PADDING;
+            int height = (int) Math.ceil(mBottom - originY) + PADDING;
+            if (width <= 0 || height <= 0)
+                return;
+
+            mPainter.paint(mLayer.beginDrawing(target, width, height), -originX, -originY);
+            mLayer.endDrawing();
+            RenderStats.count(RenderStats.COUNT_SPRITE_RENDERS);
+        }
+
+        double radians = Math.toRadians(degrees);
+        mLayer.drawOnLine(target, pivotX, pivotY
+                , pivotX + (float) Math.cos(radians), pivotY + (float) Math.sin(radians)
+                , originX, originY);
+    }
+
+    public void release() {
+        mLayer.release();
+    }
+}
@@ -0,0 +1,181 @@
+package pie.watchface;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The watch side of the sync: the events the phone sent, colored there already but unfiltered, the
+ * watch's {@link EventFilter} is applied to every query. Every batch is applied incrementally, a delta
+ * only touches the events it names, and the loader cuts its windows out of them like out of the provider.
+ * <p>
+ * A delta that doesn't follow the batch applied last, or a batch that can't be read, is dropped, and
+ * the events are requested again with the last applied sequence, which gets a full batch back. The
+ * events are also requested once a window reaches past the span the phone covered.
+ */
+public class SyncedEventSource implements CalendarEventLoader.EventSource, SyncTransport.Receiver {
+
+    public static final String TAG = SyncedEventSource.class.getSimpleName();
+
+    public interface Listener {
+        /**
+         * Called on the transport's thread after a batch has been applied
+         */
+        void onSyncedEventsChanged();
+    }
+
+    private static final class Event {
+        String title;
+        String location;
+        long startMillis;
+        long endMillis;
+        boolean allDay;
+        int color;
+        long calendarId;
+        boolean declined;
+    }
+
+    private final SyncTransport mTransport;
+    private volatile Listener mListener;
+    private volatile EventFilter mEventFilter = EventFilter.NONE;
+
+    // guarded by this
+    private final Map<Long, Event> mEvents = new HashMap<>();
+    private int mSequence;
+    private long mWindowEndMillis;
+    private boolean mRequestedMore;
+
+    /**
+     * Starts receiving batches, and asks the phone for its events
+     */
+    public SyncedEventSource(SyncTransport transport) {
+        this.mTransport = transport;
+        transport.setReceiver(this);
+        requestSync();
+    }
+
+    public void setListener(@Nullable Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * Replaces the filter applied to the synced events, takes effect on the next query
+     */
+    public void setEventFilter(@NonNull EventFilter filter) {
+        this.mEventFilter = filter;
+    }
+
+    /**
+     * @return whether a batch has been applied, before that the events have to come from elsewhere
+     */
+    public synchronized boolean hasEvents() {
+        return mSequence != 0;
+    }
+
+    /**
+     * Asks the phone for the events the watch is missing since the last applied batch
+     */
+    public void requestSync() {
+        int sequence;
+        synchronized (this) {
+            sequence = mSequence;
+        }
+        mTransport.send(SyncTransport.PATH_REQUEST, EventBatch.encodeRequest(sequence));
+    }
+
+    /**
+     * Stops receiving batches
+     */
+    public void close() {
+        mTransport.setReceiver(null);
+    }
+
+    @NonNull
+    @Override
+    public EventStore query(long beginMillis, long endMillis) {
+        boolean requestMore = false;
+        EventFilter filter = mEventFilter;
+        EventStore.Builder events;
+
+        synchronized (this) {
+            if (endMillis > mWindowEndMillis && !mRequestedMore) {
+                // the phone's window is running out, it sends the next part along with any other changes
+                mRequestedMore = true;
+                requestMore = true;
+            }
+
+            events = new EventStore.Builder(mEvents.size());
+            for (Map.Entry<Long, Event> entry : mEvents.entrySet()) {
+                Event event = entry.getValue();
+                if (event.endMillis > beginMillis && event.startMillis < endMillis
+                        && filter.matches(event.title, event.startMillis, event.endMillis, event.allDay, event.calendarId, event.declined))
+                    events.add(entry.getKey(), event.title, event.startMillis, event.endMillis, event.location, event.allDay, event.color);
+            }
+        }
+
+        if (requestMore)
+            requestSync();
+        return events.build();
+    }
+
+    @Override
+    public void onMessage(String path, byte[] data) {
+        if (!SyncTransport.PATH_EVENTS.equals(path))
+            return;
+
+        EventBatch batch;
+        try {
+            batch = EventBatch.decode(data);
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "dropping a batch that can't be read", e);
+            requestSync();
+            return;
+        }
+
+        if (!apply(batch)) {
+            // missed a batch in between
+            requestSync();
+            return;
+        }
+
+        Listener listener = mListener;
+        if (listener != null)
+            listener.onSyncedEventsChanged();
+    }
+
+    private synchronized boolean apply(EventBatch batch) {
+        if (batch.type == EventBatch.TYPE_DELTA && (mSequence == 0 || batch.baseSequence != mSequence))
+            return false;
+
+        if (batch.type == EventBatch.TYPE_FULL)
+            mEvents.clear();
+
+        for (int i = 0; i < batch.getRemovedCount(); i++)
+            mEvents.remove(batch.getRemovedId(i));
+
+        for (int i = 0; i < batch.size(); i++) {
+            Long id = batch.getId(i);
+            Event event = mEvents.get(id);
+            if (event == null) {
+                event = new Event();
+                mEvents.put(id, event);
+            }
+            event.title = batch.getTitle(i);
+            event.location = batch.getLocation(i);
+            event.startMillis = batch.getStartMillis(i);
+            event.endMillis = batch.getEndMillis(i);
+            event.allDay = batch.isAllDay(i);
+            event.color = batch.getColor(i);
+            event.calendarId = batch.getCalendarId(i);
+            event.declined = batch.isDeclined(i);
+        }
+
+        mSequence = batch.sequence;
+        mWindowEndMillis = batch.windowEndMillis;
+        mRequestedMore = false;
+        return true;
+    }
+}
@@ -0,0 +1,250 @@
+package pie.watchface;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded LRU cache of pre-rendered text. Laying glyphs out along a line is one of the most expensive
+ * things the face draws, so each title and "in Xh" label is rendered once, horizontally, into a small
+ * layer, and every later draw just blits that layer rotated onto the line.
+ * <p>
+ * A sprite is keyed by the text, the brush configuration and the text gradient. A linear gradient running
+ * along the line is stored relative to the text's anchor, rounded to whole pixels, so the same title on
+ * a line of about the same length hits the same sprite. Any other gradient is drawn as plain text.
+ */
+public class TextSpriteCache {
+
+    // room around the glyphs for anti-aliasing
+    private static final int PADDING = 2;
+
+    private static final class Key {
+        String text;
+        Brush brush;
+        int generation;
+        int color;
+        Brush.Align align;
+        boolean hasGradient;
+        int gradientX0;
+        int gradientX1;
+        int[] colors;
+        float[] positions;
+        boolean mirror;
+        int hash;
+
+        void set(String text, Brush brush) {
+            this.text = text;
+            this.brush = brush;
+            this.generation = brush.getGeneration();
+            this.color = brush.getColor();
+            this.align = brush.getTextAlign();
+            this.hasGradient = false;
+            this.colors = null;
+            this.positions = null;
+        }
+
+        void setGradient(int x0, int x1, Gradient gradient) {
+            this.hasGradient = true;
+            this.gradientX0 = x0;
+            this.gradientX1 = x1;
+            this.colors = gradient.colors;
+            this.positions = gradient.positions;
+            this.mirror = gradient.mirror;
+        }
+
+        void updateHash() {
+            int h = text.hashCode();
+            h = 31 * h + System.identityHashCode(brush);
+            h = 31 * h + generation;
+            h = 31 * h + color;
+            h = 31 * h + align.ordinal();
+            if (hasGradient) {
+                h = 31 * h + gradientX0;
+                h = 31 * h + gradientX1;
+                h = 31 * h + Arrays.hashCode(colors);
+                h = 31 * h + Arrays.hashCode(positions);
+                h = 31 * h + (mirror ? 1 : 0);
+            }
+            hash = h;
+        }
+
+        Key copy() {
+            Key key = new Key();
+            key.text = text;
+            key.brush = brush;
+            key.generation = generation;
+            key.color = color;
+            key.align = align;
+            key.hasGradient = hasGradient;
+            key.gradientX0 = gradientX0;
+            key.gradientX1 = gradientX1;
+            key.colors = colors != null ? colors.clone() : null;
+            key.positions = positions != null ? positions.clone() : null;
+            key.mirror = mirror;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+                return false;
+
+            Key other = (Key) o;
+            return hash == other.hash
+                    && brush == other.brush
+                    && generation == other.generation
+                    && color == other.color
+                    && align == other.align
+                    && hasGradient == other.hasGradient
+                    && text.equals(other.text)
+                    && (!hasGradient || (gradientX0 == other.gradientX0
+                    && gradientX1 == other.gradientX1
+                    && mirror == other.mirror
+                    && Arrays.equals(colors, other.colors)
+                    && Arrays.equals(positions, other.positions)));
+        }
+    }
+
+    private static final class Sprite {
+        final RenderTarget.Layer layer;
+        final int bytes;
+
+        // the sprite's left edge relative to the text's anchor, and the baseline within the sprite
+        final float originX;
+        final float baseline;
+
+        Sprite(RenderTarget.Layer layer, float originX, float baseline) {
+            this.layer = layer;
+            this.bytes = layer.getWidth() * layer.getHeight() * 4;
+            this.originX = originX;
+            this.baseline = baseline;
+        }
+    }
+
+    private final int mMaxBytes;
+    private int mBytes;
+
+    // in access order, so the eldest entry is the least recently drawn
+    private final LinkedHashMap<Key, Sprite> mSprites = new LinkedHashMap<>(16, 0.75f, true);
+
+    // reused for lookups, only copied when a new sprite gets stored
+    private final Key mLookup = new Key();
+
+    /**
+     * @param maxBytes the pixel memory all sprites together may take
+     */
+    public TextSpriteCache(int maxBytes) {
+        this.mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Draws the text like {@link RenderTarget#drawTextOnLine(String, float, float, float, float, float, float, Brush)},
+     * from a cached sprite where possible
+     */
+    public void drawTextOnLine(RenderTarget target, String text, float startX, float startY, float stopX, float stopY,
+                               float hOffset, float vOffset, Brush brush) {
+        float dx = stopX - startX;
+        float dy = stopY - startY;
+        float length = (float) Math.sqrt(dx * dx + dy * dy);
+        if (length == 0) {
+            target.drawTextOnLine(text, startX, startY, stopX, stopY, hOffset, vOffset, brush);
+            return;
+        }
+
+        // like on a path, the text is aligned relative to the length of the line
+        float anchor = hOffset;
+        if (brush.getTextAlign() == Brush.Align.CENTER) anchor += length / 2;
+        else if (brush.getTextAlign() == Brush.Align.RIGHT) anchor += length;
+
+        Key key = mLookup;
+        key.set(text, brush);
+
+        Gradient gradient = brush.getGradient();
+        if (gradient != null) {
+            if (gradient.type != Gradient.LINEAR || !isAlongLine(gradient, dx, dy, length)) {
+                target.drawTextOnLine(text, startX, startY, stopX, stopY, hOffset, vOffset, brush);
+                return;
+            }
+
+            // the distances along the line of the gradient's ends, relative to the anchor
+            float u0 = ((gradient.x0 - startX) * dx + (gradient.y0 - startY) * dy) / length - anchor;
+            float u1 = ((gradient.x1 - startX) * dx + (gradient.y1 - startY) * dy) / length - anchor;
+            key.setGradient(Math.round(u0), Math.round(u1), gradient);
+        }
+        key.updateHash();
+
+        Sprite sprite = mSprites.get(key);
+        if (sprite == null) {
+            RenderStats.count(RenderStats.COUNT_TEXT_SPRITE_MISSES);
+            sprite = render(target, key);
+            mSprites.put(key.copy(), sprite);
+            mBytes += sprite.bytes;
+            trimTo(mMaxBytes);
+        } else {
+            RenderStats.count(RenderStats.COUNT_TEXT_SPRITE_HITS);
+        }
+
+        target.drawLayerOnLine(sprite.layer, startX, startY, stopX, stopY, anchor + sprite.originX, vOffset - sprite.baseline);
+    }
+
+    public int size() {
+        return mSprites.size();
+    }
+
+    /**
+     * Releases all sprites
+     */
+    public void release() {
+        trimTo(0);
+    }
+
+    private Sprite render(RenderTarget target, Key key) {
+        Brush brush = key.brush;
+        float width = target.measureText(key.text, brush);
+        float ascent = (float) Math.ceil(target.getTextAscent(brush));
+        float descent = (float) Math.ceil(target.getTextDescent(brush));
+
+        RenderTarget.Layer layer = target.createLayer((int) Math.ceil(width) + 2 * PADDING, (int) (ascent + descent) + 2 * PADDING, RenderTarget.LAYER_TRANSLUCENT);
+        float baseline = PADDING + ascent;
+
+        float textX = 0;
+        if (key.align == Brush.Align.CENTER) textX = -width / 2;
+        else if (key.align == Brush.Align.RIGHT) textX = -width;
+        float originX = textX - PADDING;
+
+        // the text is laid out left to right from the sprite's left edge, with the gradient moved along
+        Brush spriteBrush = new Brush(brush);
+        spriteBrush.setTextAlign(Brush.Align.LEFT);
+        spriteBrush.setGradient(key.hasGradient
+                ? Gradient.linear(key.gradientX0 - originX, baseline, key.gradientX1 - originX, baseline, key.colors, key.positions, key.mirror)
+                : null);
+
+        layer.getTarget().drawTextOnLine(key.text, 0, baseline, layer.getWidth(), baseline, PADDING, 0, spriteBrush);
+        return new Sprite(layer, originX, baseline);
+    }
+
+    private void trimTo(int maxBytes) {
+        Iterator<Map.Entry<Key, Sprite>> iterator = mSprites.entrySet().iterator();
+        while (mBytes > maxBytes && iterator.hasNext()) {
+            Sprite sprite = iterator.next().getValue();
+            iterator.remove();
+            sprite.layer.release();
+            mBytes -= sprite.bytes;
+        }
+    }
+
+    // a linear gradient is the same everywhere across its axis, so along a parallel line it only varies with the distance
+    private static boolean isAlongLine(Gradient gradient, float dx, float dy, float length) {
+        float gx = gradient.x1 - gradient.x0;
+        float gy = gradient.y1 - gradient.y0;
+        float gradientLength = (float) Math.sqrt(gx * gx + gy * gy);
+        return gradientLength > 0 && Math.abs(gx * dy - gy * dx) / (gradientLength * length) < 0.001f;
+    }
+}
@@ -0,0 +1,183 @@
+package pie.watchface;
+
+import java.util.TimeZone;
+
+/**
+ * All time math of the watch face, in minutes since the epoch. Local time is the epoch time plus the
+ * offset of the time zone, which is cached for as long as it can't change: until the next DST transition,
+ * or until {@link #refresh()} is called because the time zone or the time has been changed.
+ * <p>
+ * With the offset cached, the minute of the day, the position on the dial and the time left till an
+ * event are plain integer arithmetic, and stay correct across midnight and DST transitions.
+ */
+public final class TimeEngine {
+
+    public static final long MILLIS_PER_MINUTE = 60 * 1000L;
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    // the dial shows 12 hours
+    public static final int MINUTES_PER_DIAL = 12 * 60;
+
+    // how far around the current time DST transitions are searched for, before simply checking again
+    private static final long TRANSITION_SEARCH_MILLIS = 7 * MINUTES_PER_DAY * MILLIS_PER_MINUTE;
+    private static final long SEARCH_STEP_MILLIS = MINUTES_PER_DAY * MILLIS_PER_MINUTE;
+
+    private static final TimeEngine INSTANCE = new TimeEngine(TimeZone.getDefault());
+
+    /**
+     * The offset of a zone, valid between two transitions. Immutable, so it can be read from any thread.
+     */
+    private static final class Offset {
+        final TimeZone zone;
+        final long offsetMillis;
+        final long validFromMillis;
+        final long validUntilMillis;
+
+        Offset(TimeZone zone, long offsetMillis, long validFromMillis, long validUntilMillis) {
+            this.zone = zone;
+            this.offsetMillis = offsetMillis;
+            this.validFromMillis = validFromMillis;
+            this.validUntilMillis = validUntilMillis;
+        }
+    }
+
+    private volatile Offset mOffset;
+
+    /**
+     * @return the engine for the default time zone of the process
+     */
+    public static TimeEngine getInstance() {
+        return INSTANCE;
+    }
+
+    public TimeEngine(TimeZone zone) {
+        mOffset = computeOffset(zone, System.currentTimeMillis());
+    }
+
+    /**
+     * Picks up the current default time zone and offset, call it when the time zone or the time has been changed
+     */
+    public void refresh() {
+        setTimeZone(TimeZone.getDefault());
+    }
+
+    public void setTimeZone(TimeZone zone) {
+        mOffset = computeOffset((TimeZone) zone.clone(), System.currentTimeMillis());
+    }
+
+    public TimeZone getTimeZone() {
+        return mOffset.zone;
+    }
+
+    /**
+     * @return the offset of local time at the given moment
+     */
+    public long getOffsetMillis(long millis) {
+        Offset offset = mOffset;
+        if (millis >= offset.validFromMillis && millis < offset.validUntilMillis)
+            return offset.offsetMillis;
+
+        // the cached offset follows the current time, other moments are looked up
+        long now = System.currentTimeMillis();
+        if (now < offset.validFromMillis || now >= offset.validUntilMillis) {
+            offset = computeOffset(offset.zone, now);
+            mOffset = offset;
+            if (millis >= offset.validFromMillis && millis < offset.validUntilMillis)
+                return offset.offsetMillis;
+        }
+        return offset.zone.getOffset(millis);
+    }
+
+    /**
+     * @return the minutes since the epoch, regardless of the time zone
+     */
+    public static long getEpochMinutes(long millis) {
+        return floorDiv(millis, MILLIS_PER_MINUTE);
+    }
+
+    /**
+     * @return the minutes since the epoch in local time
+     */
+    public long getLocalEpochMinutes(long millis) {
+        return floorDiv(millis + getOffsetMillis(millis), MILLIS_PER_MINUTE);
+    }
+
+    /**
+     * @return the local minute of the day, 0 to 1439
+     */
+    public int getMinuteOfDay(long millis) {
+        return (int) floorMod(getLocalEpochMinutes(millis), MINUTES_PER_DAY);
+    }
+
+    /**
+     * @return the local minute on the 12 hour dial, 0 to 719
+     */
+    public int getMinuteOfDial(long millis) {
+        return (int) floorMod(getLocalEpochMinutes(millis), MINUTES_PER_DIAL);
+    }
+
+    /**
+     * @return the milliseconds into the local minute
+     */
+    public int getMillisOfMinute(long millis) {
+        return (int) floorMod(millis + getOffsetMillis(millis), MILLIS_PER_MINUTE);
+    }
+
+    /**
+     * @return the whole minutes from one moment to another, as a clock on the wall counts them
+     */
+    public static int getMinutesBetween(long fromMillis, long toMillis) {
+        return (int) (getEpochMinutes(toMillis) - getEpochMinutes(fromMillis));
+    }
+
+    /**
+     * @return the minutes the dial moves from one moment to another, which differs from the elapsed
+     * minutes across a DST transition
+     */
+    public int getDialMinutesBetween(long fromMillis, long toMillis) {
+        return (int) (getLocalEpochMinutes(toMillis) - getLocalEpochMinutes(fromMillis));
+    }
+
+    private static Offset computeOffset(TimeZone zone, long now) {
+        long offset = zone.getOffset(now);
+        long validFrom = findTransition(zone, now, now - TRANSITION_SEARCH_MILLIS, offset);
+        long validUntil = findTransition(zone, now, now + TRANSITION_SEARCH_MILLIS, offset);
+        return new Offset(zone, offset, validFrom, validUntil);
+    }
+
+    /**
+     * @return the edge of the span around from, towards to, in which the zone has the given offset,
+     * or to when the offset doesn't change in between
+     */
+    private static long findTransition(TimeZone zone, long from, long to, long offset) {
+        long step = to > from ? SEARCH_STEP_MILLIS : -SEARCH_STEP_MILLIS;
+        long inside = from;
+
+        // step a day at a time, then bisect the day the offset changes in
+        while (inside != to) {
+            long next = Math.abs(to - inside) > SEARCH_STEP_MILLIS ? inside + step : to;
+            if (zone.getOffset(next) != offset) {
+                long outside = next;
+                while (Math.abs(outside - inside) > 1) {
+                    long middle = inside + (outside - inside) / 2;
+                    if (zone.getOffset(middle) == offset) inside = middle;
+                    else outside = middle;
+                }
+                // the span includes its start, but not its end
+                return to > from ? outside : inside;
+            }
+            inside = next;
+        }
+        return to;
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        if ((x % y != 0) && ((x ^ y) < 0)) q--;
+        return q;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+}